@@ -0,0 +1,35 @@
+package com.dataagent;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+// 一条SQL的血缘解析结果：写入的目标表（如果有），叶子节点表及其被使用的列
+public class LineageResult {
+    private final String targetTable;
+    private final Map<String, Set<String>> tableColumns;
+    private final int cteCount;
+
+    public LineageResult(String targetTable, Map<String, Set<String>> tableColumns, int cteCount) {
+        this.targetTable = targetTable;
+        this.tableColumns = Collections.unmodifiableMap(tableColumns);
+        this.cteCount = cteCount;
+    }
+
+    // INSERT/CREATE TABLE/CREATE VIEW/MERGE的目标表，普通查询为null
+    public String getTargetTable() {
+        return targetTable;
+    }
+
+    public Set<String> getTables() {
+        return tableColumns.keySet();
+    }
+
+    public Map<String, Set<String>> getTableColumns() {
+        return tableColumns;
+    }
+
+    public int getCteCount() {
+        return cteCount;
+    }
+}
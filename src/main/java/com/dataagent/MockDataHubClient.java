@@ -7,11 +7,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class MockDataHubClient {
     private static final Logger log = LoggerFactory.getLogger(MockDataHubClient.class);
     private final Map<String, TableMetadata> tables = new HashMap<>();
-    private final Map<String, Set<String>> lineage = new HashMap<>();
+    private final Map<String, Set<String>> lineage = new ConcurrentHashMap<>();
 
     public MockDataHubClient() {
         initializeTestTables();
@@ -24,8 +25,8 @@ public class MockDataHubClient {
         tables.put("project.dataset.products", new TableMetadata("project.dataset.products", Arrays.asList("id", "name", "price", "category")));
 
         // 初始化血缘关系
-        lineage.put("project.dataset.orders", new HashSet<>(Arrays.asList("project.dataset.users")));
-        lineage.put("project.dataset.products", new HashSet<>(Arrays.asList("project.dataset.orders")));
+        createLineage("project.dataset.orders", "project.dataset.users", "DEPENDS_ON");
+        createLineage("project.dataset.products", "project.dataset.orders", "DEPENDS_ON");
     }
 
     public TableMetadata getTableMetadata(String tableName) {
@@ -33,8 +34,10 @@ public class MockDataHubClient {
     }
 
     public void createLineage(String tableName, String dependentTable, String relationshipType) {
-        lineage.computeIfAbsent(tableName, k -> new HashSet<>()).add(dependentTable);
-        log.info("Created lineage relationship: {} -> {} ({})", tableName, dependentTable, relationshipType);
+        // 重复的关系直接忽略，只在新增时打debug日志
+        if (lineage.computeIfAbsent(tableName, k -> ConcurrentHashMap.newKeySet()).add(dependentTable)) {
+            log.debug("Created lineage relationship: {} -> {} ({})", tableName, dependentTable, relationshipType);
+        }
     }
 
     public void printLineage() {
@@ -1,97 +1,87 @@
 package com.dataagent;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.dataagent.diagnostics.AnalysisTrace;
+import com.dataagent.diagnostics.SlowAnalysisRecorder;
 import com.dataagent.service.DataHubService;
 
 @Component
 public class SqlLineageAnalyzer {
     private static final Logger log = LoggerFactory.getLogger(SqlLineageAnalyzer.class);
 
+    // CTE数量达到该值时并行分析。单个CTE顺序分析约15us，向线程池派发一次约10us，
+    // CTE太少时派发开销抵消并行收益；可用AnalyzeLoadTest中的CTE基准在目标机器上验证
+    private static final int PARALLEL_CTE_THRESHOLD = Integer.getInteger("analyzer.cte.parallel-threshold", 8);
+
+    private static final Pattern TARGET_TABLE_PATTERN = Pattern.compile(
+        "^(?:INSERT\\s+(?:INTO\\s+)?|MERGE\\s+(?:INTO\\s+)?|CREATE\\s+(?:OR\\s+REPLACE\\s+)?(?:TEMP(?:ORARY)?\\s+)?" +
+        "(?:TABLE|VIEW|MATERIALIZED\\s+VIEW)\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?)([^\\s(]+)", Pattern.CASE_INSENSITIVE);
+    // 目标表之后、顶层WITH之前可能出现的列清单和AS关键字
+    private static final Pattern TARGET_SUFFIX_PATTERN = Pattern.compile("\\s*(?:\\([^()]*\\)\\s*)?(?:AS\\s+)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern WITH_PATTERN = Pattern.compile("WITH\\s+(?:RECURSIVE\\s+)?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CTE_HEADER_PATTERN = Pattern.compile("\\s*,?\\s*([^\\s(),]+)\\s+AS\\s*\\(", Pattern.CASE_INSENSITIVE);
+    private static final Pattern FROM_PATTERN = Pattern.compile("FROM\\s+([^\\s]+)(?:\\s+(?:AS\\s+)?([^\\s]+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN_PATTERN = Pattern.compile("JOIN\\s+([^\\s]+)(?:\\s+(?:AS\\s+)?([^\\s]+))?", Pattern.CASE_INSENSITIVE);
+    // MERGE ... USING <table> [alias] ON 的源表；JOIN ... USING (col) 以括号开头，不会匹配
+    private static final Pattern USING_PATTERN = Pattern.compile("\\bUSING\\s+([^\\s(]+)(?:\\s+(?:AS\\s+)?(?!ON\\b)([^\\s]+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT_PATTERN = Pattern.compile("SELECT\\s+(.+?)\\s+FROM", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+    private static final Pattern SELECT_ITEM_PATTERN = Pattern.compile("^(?:DISTINCT\\s+)?(.+?)(?:\\s+(?:AS\\s+)?[A-Za-z_]\\w*)?$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN_REFERENCE_PATTERN = Pattern.compile("(?:([^\\s.()]+)\\.)?(\\w+|\\*)");
+
     @Autowired
     private DataHubService dataHubService;
 
+    @Autowired(required = false)
+    private SlowAnalysisRecorder slowAnalysisRecorder;
+
     public String analyzeLineage(String sql) {
-        // 预处理SQL，移除注释和多余空白
-        sql = preprocessSql(sql);
-        
-        // 存储表依赖和使用的列
-        Map<String, Set<String>> tableColumns = new HashMap<>();
-        Map<String, String> tableAliases = new HashMap<>();
-        Set<String> leafTables = new HashSet<>();
-        Set<String> intermediateTables = new HashSet<>();
-        Set<String> usedColumns = new HashSet<>();
-        
+        AnalysisTrace trace = AnalysisTrace.start(slowAnalysisRecorder, sql);
+
+        LineageResult lineage;
         try {
-            // 处理WITH子句
-            Pattern withPattern = Pattern.compile("WITH\\s+([^\\s]+)\\s+AS\\s*\\(([^()]+|\\([^()]*\\))*\\)(?:\\s*,\\s*([^\\s]+)\\s+AS\\s*\\(([^()]+|\\([^()]*\\))*\\))*\\s*SELECT", 
-                Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-            Matcher withMatcher = withPattern.matcher(sql);
-            
-            while (withMatcher.find()) {
-                // 处理第一个CTE
-                String cteName = withMatcher.group(1).trim();
-                String cteQuery = withMatcher.group(2).trim();
-                intermediateTables.add(cteName);
-                processQuery(cteQuery, tableColumns, tableAliases, leafTables, intermediateTables, usedColumns);
-                
-                // 处理后续的CTE
-                if (withMatcher.group(3) != null) {
-                    String secondCteName = withMatcher.group(3).trim();
-                    String secondCteQuery = withMatcher.group(4).trim();
-                    intermediateTables.add(secondCteName);
-                    processQuery(secondCteQuery, tableColumns, tableAliases, leafTables, intermediateTables, usedColumns);
-                }
-            }
-            
-            // 移除WITH子句，处理主查询
-            String mainQuery = sql.replaceAll("WITH\\s+[^\\s]+\\s+AS\\s*\\((?:[^()]+|\\([^()]*\\))*\\)(?:\\s*,\\s*[^\\s]+\\s+AS\\s*\\((?:[^()]+|\\([^()]*\\))*\\))*\\s*", "");
-            processQuery(mainQuery, tableColumns, tableAliases, leafTables, intermediateTables, usedColumns);
-            
-            // 从leafTables中移除中间表
-            leafTables.removeAll(intermediateTables);
-            
-            // 从tableColumns中移除中间表的列
-            intermediateTables.forEach(tableColumns::remove);
-            
+            lineage = analyze(sql, trace);
         } catch (Exception e) {
             log.error("Failed to parse SQL: {}", sql, e);
+            trace.finish(0, 0);
             return "Error: Failed to parse SQL";
         }
         
         // 生成报告，只包含叶子节点表
+        trace.stage("report");
         StringBuilder report = new StringBuilder();
         report.append("Table Dependencies:\n");
-        for (String table : leafTables) {
+        for (String table : lineage.getTables()) {
             report.append("  - ").append(table).append("\n");
         }
         
         report.append("\nUsed Columns:\n");
-        for (String table : leafTables) {
-            Set<String> columns = tableColumns.get(table);
-            if (columns != null) {
-                report.append("  ").append(table).append(":\n");
-                for (String column : columns) {
-                    if (usedColumns.contains(column)) {
-                        report.append("    - ").append(column).append("\n");
-                    }
-                }
+        lineage.getTableColumns().forEach((table, columns) -> {
+            report.append("  ").append(table).append(":\n");
+            for (String column : columns) {
+                report.append("    - ").append(column).append("\n");
             }
-        }
+        });
 
         // 添加schema信息，只包含叶子节点表
+        trace.stage("schema_lookup");
         report.append("\nSchema Information:\n");
-        for (String table : leafTables) {
+        for (String table : lineage.getTables()) {
             String[] parts = table.split("\\.");
             if (parts.length == 3) {
                 Map<String, String> schema = dataHubService.getTableSchema(parts[0], parts[1], parts[2]);
@@ -103,9 +93,70 @@ public class SqlLineageAnalyzer {
             }
         }
         
+        trace.finish(lineage.getTables().size(), lineage.getCteCount());
         return report.toString();
     }
 
+    // 只解析血缘，不查询schema
+    public LineageResult analyze(String sql) {
+        AnalysisTrace trace = AnalysisTrace.start(slowAnalysisRecorder, sql);
+        LineageResult lineage = analyze(sql, trace);
+        trace.finish(lineage.getTables().size(), lineage.getCteCount());
+        return lineage;
+    }
+
+    private LineageResult analyze(String sql, AnalysisTrace trace) {
+        // 预处理SQL，移除注释和多余空白
+        trace.stage("preprocess");
+        sql = preprocessSql(sql);
+        
+        // 存储表依赖和使用的列
+        Map<String, Set<String>> tableColumns = new LinkedHashMap<>();
+        Map<String, String> tableAliases = new LinkedHashMap<>();
+        Set<String> leafTables = new LinkedHashSet<>();
+        Set<String> intermediateTables = new LinkedHashSet<>();
+        Set<String> usedColumns = new LinkedHashSet<>();
+
+        Matcher targetMatcher = TARGET_TABLE_PATTERN.matcher(sql);
+        String targetTable = targetMatcher.lookingAt() ? targetMatcher.group(1) : null;
+        
+        // 处理WITH子句：先拆出所有CTE，每个CTE使用独立的结果集分析，再按声明顺序合并
+        trace.stage("cte");
+        WithClause withClause = splitWithClause(sql, targetTable != null ? targetMatcher.end() : 0);
+        List<CteDefinition> ctes = withClause.ctes;
+        ctes.forEach(cte -> intermediateTables.add(cte.name));
+
+        ForkJoinPool ctePool = ctes.size() >= PARALLEL_CTE_THRESHOLD ? CtePool.POOL : null;
+        List<QueryScope> cteScopes = ctePool == null
+            ? ctes.stream().map(cte -> analyzeCte(cte, intermediateTables)).collect(Collectors.toList())
+            : ctePool.submit(() -> ctes.parallelStream()
+                .map(cte -> analyzeCte(cte, intermediateTables))
+                .collect(Collectors.toList())).join();
+        for (QueryScope scope : cteScopes) {
+            scope.mergeInto(tableColumns, tableAliases, leafTables, usedColumns);
+        }
+        
+        // 处理主查询
+        trace.stage("main_query");
+        processQuery(withClause.mainQuery, tableColumns, tableAliases, leafTables, intermediateTables, usedColumns);
+        
+        // 从leafTables中移除中间表
+        leafTables.removeAll(intermediateTables);
+
+        // 只保留叶子节点表实际使用的列
+        Map<String, Set<String>> leafColumns = new LinkedHashMap<>();
+        for (String table : leafTables) {
+            Set<String> columns = new LinkedHashSet<>();
+            for (String column : tableColumns.getOrDefault(table, Collections.emptySet())) {
+                if (usedColumns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+            leafColumns.put(table, columns);
+        }
+        return new LineageResult(targetTable, leafColumns, intermediateTables.size());
+    }
+
     private String preprocessSql(String sql) {
         // 移除SQL注释
         sql = sql.replaceAll("--.*$", ""); // 移除单行注释
@@ -120,12 +171,74 @@ public class SqlLineageAnalyzer {
         return sql;
     }
 
+    // 拆分语句顶层WITH子句中的CTE定义，括号按嵌套层级匹配；没有顶层WITH或无法识别时整个SQL作为主查询。
+    // 顶层WITH只能出现在语句开头，或者INSERT/CREATE等目标表声明之后，字符串或子查询里的WITH不处理
+    private WithClause splitWithClause(String sql, int targetEnd) {
+        int withStart = 0;
+        if (targetEnd > 0) {
+            Matcher suffixMatcher = TARGET_SUFFIX_PATTERN.matcher(sql);
+            suffixMatcher.region(targetEnd, sql.length()).lookingAt();
+            withStart = suffixMatcher.end();
+        }
+        Matcher withMatcher = WITH_PATTERN.matcher(sql);
+        if (!withMatcher.region(withStart, sql.length()).lookingAt()) {
+            return new WithClause(Collections.emptyList(), sql);
+        }
+
+        List<CteDefinition> ctes = new ArrayList<>();
+        int position = withMatcher.end();
+        Matcher headerMatcher = CTE_HEADER_PATTERN.matcher(sql);
+        while (headerMatcher.region(position, sql.length()).lookingAt()) {
+            int bodyStart = headerMatcher.end();
+            int bodyEnd = findClosingParenthesis(sql, bodyStart);
+            if (bodyEnd < 0) {
+                return new WithClause(Collections.emptyList(), sql);
+            }
+            ctes.add(new CteDefinition(headerMatcher.group(1), sql.substring(bodyStart, bodyEnd).trim()));
+            position = bodyEnd + 1;
+        }
+
+        if (ctes.isEmpty()) {
+            return new WithClause(ctes, sql);
+        }
+        return new WithClause(ctes, (sql.substring(0, withStart) + sql.substring(position)).trim());
+    }
+
+    private int findClosingParenthesis(String sql, int start) {
+        int depth = 1;
+        char quote = 0;
+        for (int i = start; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // 每个CTE只依赖其他CTE的名字（用于排除中间表），不依赖它们的分析结果，因此可以互相独立地并行分析
+    private QueryScope analyzeCte(CteDefinition cte, Set<String> intermediateTables) {
+        QueryScope scope = new QueryScope();
+        processQuery(cte.query, scope.tableColumns, scope.tableAliases, scope.leafTables,
+            intermediateTables, scope.usedColumns);
+        return scope;
+    }
+
     private void processQuery(String sql, Map<String, Set<String>> tableColumns,
                             Map<String, String> tableAliases, Set<String> leafTables,
                             Set<String> intermediateTables, Set<String> usedColumns) {
         // 处理FROM子句
-        Pattern fromPattern = Pattern.compile("FROM\\s+([^\\s]+)(?:\\s+(?:AS\\s+)?([^\\s]+))?", Pattern.CASE_INSENSITIVE);
-        Matcher fromMatcher = fromPattern.matcher(sql);
+        Matcher fromMatcher = FROM_PATTERN.matcher(sql);
         
         while (fromMatcher.find()) {
             String tableName = fromMatcher.group(1).trim();
@@ -136,14 +249,13 @@ public class SqlLineageAnalyzer {
             }
             
             if (!intermediateTables.contains(tableName)) {
-                tableColumns.computeIfAbsent(tableName, k -> new HashSet<>());
+                tableColumns.computeIfAbsent(tableName, k -> new LinkedHashSet<>());
                 leafTables.add(tableName);
             }
         }
         
         // 处理JOIN子句
-        Pattern joinPattern = Pattern.compile("JOIN\\s+([^\\s]+)(?:\\s+(?:AS\\s+)?([^\\s]+))?", Pattern.CASE_INSENSITIVE);
-        Matcher joinMatcher = joinPattern.matcher(sql);
+        Matcher joinMatcher = JOIN_PATTERN.matcher(sql);
         
         while (joinMatcher.find()) {
             String tableName = joinMatcher.group(1).trim();
@@ -154,26 +266,48 @@ public class SqlLineageAnalyzer {
             }
             
             if (!intermediateTables.contains(tableName)) {
-                tableColumns.computeIfAbsent(tableName, k -> new HashSet<>());
+                tableColumns.computeIfAbsent(tableName, k -> new LinkedHashSet<>());
+                leafTables.add(tableName);
+            }
+        }
+        
+        // 处理MERGE的USING子句
+        Matcher usingMatcher = USING_PATTERN.matcher(sql);
+        
+        while (usingMatcher.find()) {
+            String tableName = usingMatcher.group(1).trim();
+            String alias = usingMatcher.group(2) != null ? usingMatcher.group(2).trim() : null;
+            
+            if (alias != null) {
+                tableAliases.put(alias, tableName);
+            }
+            
+            if (!intermediateTables.contains(tableName)) {
+                tableColumns.computeIfAbsent(tableName, k -> new LinkedHashSet<>());
                 leafTables.add(tableName);
             }
         }
         
         // 处理SELECT子句
-        Pattern selectPattern = Pattern.compile("SELECT\\s+(.+?)\\s+FROM", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        Matcher selectMatcher = selectPattern.matcher(sql);
+        Matcher selectMatcher = SELECT_PATTERN.matcher(sql);
         
         if (selectMatcher.find()) {
             String selectClause = selectMatcher.group(1).trim();
             String[] columns = selectClause.split(",");
             
             for (String column : columns) {
-                column = column.trim();
-                if (column.contains(".")) {
-                    String[] parts = column.split("\\.");
-                    String tableRef = parts[0].trim();
-                    String columnName = parts[1].trim();
-                    
+                // 去掉输出别名，只记录对列的直接引用，函数和表达式不作为列
+                Matcher itemMatcher = SELECT_ITEM_PATTERN.matcher(column.trim());
+                if (!itemMatcher.matches()) {
+                    continue;
+                }
+                Matcher referenceMatcher = COLUMN_REFERENCE_PATTERN.matcher(itemMatcher.group(1).trim());
+                if (!referenceMatcher.matches()) {
+                    continue;
+                }
+                String tableRef = referenceMatcher.group(1);
+                String columnName = referenceMatcher.group(2);
+                if (tableRef != null) {
                     String tableName = tableAliases.getOrDefault(tableRef, tableRef);
                     if (tableColumns.containsKey(tableName) && !intermediateTables.contains(tableName)) {
                         tableColumns.get(tableName).add(columnName);
@@ -182,12 +316,57 @@ public class SqlLineageAnalyzer {
                 } else {
                     for (String tableName : tableColumns.keySet()) {
                         if (!intermediateTables.contains(tableName)) {
-                            tableColumns.get(tableName).add(column);
-                            usedColumns.add(column);
+                            tableColumns.get(tableName).add(columnName);
+                            usedColumns.add(columnName);
                         }
                     }
                 }
             }
         }
     }
-} 
\ No newline at end of file
+
+    // CTE并行分析专用的线程池，不占用web请求等其他任务也在用的公共ForkJoinPool；
+    // 并行度由 -Danalyzer.cte.parallelism 指定，默认CPU核数，为1时不建池，始终顺序分析
+    private static final class CtePool {
+        private static final int PARALLELISM =
+            Integer.getInteger("analyzer.cte.parallelism", Runtime.getRuntime().availableProcessors());
+        private static final ForkJoinPool POOL = PARALLELISM > 1 ? new ForkJoinPool(PARALLELISM) : null;
+    }
+
+    private static class CteDefinition {
+        private final String name;
+        private final String query;
+
+        private CteDefinition(String name, String query) {
+            this.name = name;
+            this.query = query;
+        }
+    }
+
+    private static class WithClause {
+        private final List<CteDefinition> ctes;
+        private final String mainQuery;
+
+        private WithClause(List<CteDefinition> ctes, String mainQuery) {
+            this.ctes = ctes;
+            this.mainQuery = mainQuery;
+        }
+    }
+
+    // 单个CTE的分析结果，互不共享，最后按CTE声明顺序合并
+    private static class QueryScope {
+        private final Map<String, Set<String>> tableColumns = new LinkedHashMap<>();
+        private final Map<String, String> tableAliases = new LinkedHashMap<>();
+        private final Set<String> leafTables = new LinkedHashSet<>();
+        private final Set<String> usedColumns = new LinkedHashSet<>();
+
+        private void mergeInto(Map<String, Set<String>> targetColumns, Map<String, String> targetAliases,
+                               Set<String> targetLeafTables, Set<String> targetUsedColumns) {
+            tableColumns.forEach((table, columns) ->
+                targetColumns.computeIfAbsent(table, k -> new LinkedHashSet<>()).addAll(columns));
+            targetAliases.putAll(tableAliases);
+            targetLeafTables.addAll(leafTables);
+            targetUsedColumns.addAll(usedColumns);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.dataagent.config;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 
 import com.dataagent.service.DataHubClient;
+import com.dataagent.service.HttpDataHubClient;
 import com.dataagent.service.InMemoryDataHubClient;
 
 @Configuration
@@ -15,8 +18,25 @@ public class DataHubConfig {
     @Value("${datahub.environment:local}")
     private String environment;
 
+    @Value("${datahub.server.url:http://localhost:8080}")
+    private String serverUrl;
+
+    @Value("${datahub.token:}")
+    private String token;
+
+    @Value("${datahub.client.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${datahub.client.request-timeout-ms:5000}")
+    private long requestTimeoutMs;
+
     @Bean
     public DataHubClient dataHubClient() {
-        return new InMemoryDataHubClient();
+        // local环境使用内存数据，其余环境访问真实的DataHub服务
+        if ("local".equalsIgnoreCase(environment)) {
+            return new InMemoryDataHubClient();
+        }
+        return new HttpDataHubClient(serverUrl, token, environment,
+            Duration.ofMillis(connectTimeoutMs), Duration.ofMillis(requestTimeoutMs));
     }
-} 
\ No newline at end of file
+}
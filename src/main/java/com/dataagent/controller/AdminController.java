@@ -0,0 +1,30 @@
+package com.dataagent.controller;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dataagent.diagnostics.SlowAnalysis;
+import com.dataagent.diagnostics.SlowAnalysisRecorder;
+
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    @Autowired
+    private SlowAnalysisRecorder slowAnalysisRecorder;
+
+    @GetMapping("/slow-analyses")
+    public List<SlowAnalysis> slowAnalyses() {
+        return slowAnalysisRecorder.getSlowest();
+    }
+
+    @DeleteMapping("/slow-analyses")
+    public void clearSlowAnalyses() {
+        slowAnalysisRecorder.clear();
+    }
+}
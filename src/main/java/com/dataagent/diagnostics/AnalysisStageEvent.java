@@ -0,0 +1,29 @@
+package com.dataagent.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.dataagent.AnalysisStage")
+@Label("SQL Analysis Stage")
+@Category({"DataAgent", "Lineage"})
+@Description("One stage of SqlLineageAnalyzer.analyzeLineage")
+@StackTrace(false)
+public class AnalysisStageEvent extends Event {
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("SQL Length")
+    @Description("Length of the SQL text in characters")
+    public int sqlLength;
+
+    @Label("Table Count")
+    public int tableCount;
+
+    @Label("CTE Count")
+    public int cteCount;
+}
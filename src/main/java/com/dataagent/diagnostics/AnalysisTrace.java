@@ -0,0 +1,92 @@
+package com.dataagent.diagnostics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 记录一次analyzeLineage调用的各阶段耗时。
+ * JFR没有在录制且慢分析记录关闭时返回共享的空实现，不做任何计时。
+ */
+public class AnalysisTrace {
+    private static final AnalysisTrace DISABLED = new AnalysisTrace(null, null, false);
+
+    private final SlowAnalysisRecorder recorder;
+    private final String sql;
+    private final boolean jfrEnabled;
+    private final long startNanos;
+    private final List<String> stageNames = new ArrayList<>(4);
+    private final List<Long> stageNanos = new ArrayList<>(4);
+    private final List<AnalysisStageEvent> events = new ArrayList<>(4);
+
+    private long stageStartNanos;
+    private AnalysisStageEvent currentEvent;
+
+    private AnalysisTrace(SlowAnalysisRecorder recorder, String sql, boolean jfrEnabled) {
+        this.recorder = recorder;
+        this.sql = sql;
+        this.jfrEnabled = jfrEnabled;
+        this.startNanos = System.nanoTime();
+    }
+
+    public static AnalysisTrace start(SlowAnalysisRecorder recorder, String sql) {
+        boolean recording = recorder != null && recorder.isEnabled();
+        boolean jfrEnabled = new AnalysisStageEvent().isEnabled();
+        if (!recording && !jfrEnabled) {
+            return DISABLED;
+        }
+        return new AnalysisTrace(recording ? recorder : null, sql, jfrEnabled);
+    }
+
+    // 结束上一个阶段并开始新的阶段
+    public void stage(String name) {
+        if (this == DISABLED) {
+            return;
+        }
+        endStage();
+        stageNames.add(name);
+        stageStartNanos = System.nanoTime();
+        if (jfrEnabled) {
+            currentEvent = new AnalysisStageEvent();
+            currentEvent.stage = name;
+            currentEvent.begin();
+        }
+    }
+
+    public void finish(int tableCount, int cteCount) {
+        if (this == DISABLED) {
+            return;
+        }
+        endStage();
+        long totalNanos = System.nanoTime() - startNanos;
+
+        for (AnalysisStageEvent event : events) {
+            if (event.shouldCommit()) {
+                event.sqlLength = sql.length();
+                event.tableCount = tableCount;
+                event.cteCount = cteCount;
+                event.commit();
+            }
+        }
+
+        if (recorder != null && recorder.isCandidate(totalNanos)) {
+            Map<String, Double> stageMillis = new LinkedHashMap<>();
+            for (int i = 0; i < stageNames.size(); i++) {
+                stageMillis.put(stageNames.get(i), stageNanos.get(i) / 1_000_000.0);
+            }
+            recorder.record(totalNanos, stageMillis, sql, tableCount, cteCount);
+        }
+    }
+
+    private void endStage() {
+        if (stageNanos.size() < stageNames.size()) {
+            stageNanos.add(System.nanoTime() - stageStartNanos);
+        }
+        if (currentEvent != null) {
+            currentEvent.end();
+            events.add(currentEvent);
+            currentEvent = null;
+        }
+    }
+}
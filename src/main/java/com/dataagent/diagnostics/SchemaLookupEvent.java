@@ -0,0 +1,25 @@
+package com.dataagent.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.dataagent.SchemaLookup")
+@Label("DataHub Schema Lookup")
+@Category({"DataAgent", "DataHub"})
+@Description("Table schema lookup through DataHubService")
+@StackTrace(false)
+public class SchemaLookupEvent extends Event {
+
+    @Label("Table")
+    public String table;
+
+    @Label("Field Count")
+    public int fieldCount;
+
+    @Label("Failed")
+    public boolean failed;
+}
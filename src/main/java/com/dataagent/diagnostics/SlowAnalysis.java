@@ -0,0 +1,52 @@
+package com.dataagent.diagnostics;
+
+import java.util.Map;
+
+public class SlowAnalysis {
+    private final long timestamp;
+    private final double totalMillis;
+    private final Map<String, Double> stageMillis;
+    private final int sqlLength;
+    private final int tableCount;
+    private final int cteCount;
+    private final String sql;
+
+    public SlowAnalysis(long timestamp, double totalMillis, Map<String, Double> stageMillis,
+                        int sqlLength, int tableCount, int cteCount, String sql) {
+        this.timestamp = timestamp;
+        this.totalMillis = totalMillis;
+        this.stageMillis = stageMillis;
+        this.sqlLength = sqlLength;
+        this.tableCount = tableCount;
+        this.cteCount = cteCount;
+        this.sql = sql;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getTotalMillis() {
+        return totalMillis;
+    }
+
+    public Map<String, Double> getStageMillis() {
+        return stageMillis;
+    }
+
+    public int getSqlLength() {
+        return sqlLength;
+    }
+
+    public int getTableCount() {
+        return tableCount;
+    }
+
+    public int getCteCount() {
+        return cteCount;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,115 @@
+package com.dataagent.diagnostics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 保留最近一段时间内最慢的N次SQL分析及各阶段耗时，供 /admin/slow-analyses 查看。
+ * 超过时间窗口的记录会被淘汰，因此个别历史异常值不会一直占住列表。
+ * 缓冲区满了以后，比当前最快一条还快的分析只读两个volatile字段、调用一次时钟（默认System.currentTimeMillis）就返回，不加锁。
+ */
+@Component
+public class SlowAnalysisRecorder {
+    private static final Comparator<SlowAnalysis> BY_DURATION = Comparator.comparingDouble(SlowAnalysis::getTotalMillis);
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int maxSqlLength;
+    private final long windowMillis;
+    private final LongSupplier clock;
+    private final PriorityQueue<SlowAnalysis> slowest;
+
+    // 缓冲区满时保留的最小耗时，未满时为0
+    private volatile long admissionThresholdNanos;
+    // 最早一条记录过期的时间，此后门槛失效，直到下一次record重新计算
+    private volatile long thresholdExpiresAtMillis = Long.MAX_VALUE;
+
+    @Autowired
+    public SlowAnalysisRecorder(@Value("${analyzer.diagnostics.slow-analysis.enabled:true}") boolean enabled,
+                                @Value("${analyzer.diagnostics.slow-analysis.capacity:20}") int capacity,
+                                @Value("${analyzer.diagnostics.slow-analysis.max-sql-length:1000}") int maxSqlLength,
+                                @Value("${analyzer.diagnostics.slow-analysis.window-ms:900000}") long windowMillis) {
+        this(enabled, capacity, maxSqlLength, windowMillis, System::currentTimeMillis);
+    }
+
+    SlowAnalysisRecorder(boolean enabled, int capacity, int maxSqlLength, long windowMillis, LongSupplier clock) {
+        this.enabled = enabled && capacity > 0;
+        this.capacity = capacity;
+        this.maxSqlLength = maxSqlLength;
+        this.windowMillis = windowMillis;
+        this.clock = clock;
+        this.slowest = new PriorityQueue<>(Math.max(1, capacity + 1), BY_DURATION);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isCandidate(long totalNanos) {
+        return enabled && (totalNanos > admissionThresholdNanos || clock.getAsLong() >= thresholdExpiresAtMillis);
+    }
+
+    public void record(long totalNanos, Map<String, Double> stageMillis, String sql,
+                       int tableCount, int cteCount) {
+        if (!isCandidate(totalNanos)) {
+            return;
+        }
+        String truncatedSql = sql.length() > maxSqlLength ? sql.substring(0, maxSqlLength) + "..." : sql;
+        long now = clock.getAsLong();
+        SlowAnalysis analysis = new SlowAnalysis(now, totalNanos / 1_000_000.0,
+            stageMillis, sql.length(), tableCount, cteCount, truncatedSql);
+
+        synchronized (slowest) {
+            evictExpired(now);
+            slowest.offer(analysis);
+            if (slowest.size() > capacity) {
+                slowest.poll();
+            }
+            updateThreshold();
+        }
+    }
+
+    public List<SlowAnalysis> getSlowest() {
+        List<SlowAnalysis> result;
+        synchronized (slowest) {
+            evictExpired(clock.getAsLong());
+            updateThreshold();
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(BY_DURATION.reversed());
+        return result;
+    }
+
+    public void clear() {
+        synchronized (slowest) {
+            slowest.clear();
+            updateThreshold();
+        }
+    }
+
+    private void evictExpired(long now) {
+        slowest.removeIf(analysis -> now - analysis.getTimestamp() >= windowMillis);
+    }
+
+    private void updateThreshold() {
+        if (slowest.size() < capacity) {
+            admissionThresholdNanos = 0;
+            thresholdExpiresAtMillis = Long.MAX_VALUE;
+            return;
+        }
+        long oldest = Long.MAX_VALUE;
+        for (SlowAnalysis analysis : slowest) {
+            oldest = Math.min(oldest, analysis.getTimestamp());
+        }
+        admissionThresholdNanos = (long) (slowest.peek().getTotalMillis() * 1_000_000);
+        thresholdExpiresAtMillis = oldest + windowMillis;
+    }
+}
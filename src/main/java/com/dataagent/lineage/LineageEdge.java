@@ -0,0 +1,63 @@
+package com.dataagent.lineage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import com.dataagent.LineageResult;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+// 表级血缘关系：downstreamTable 依赖 upstreamTable，对应 createLineage(downstreamTable, upstreamTable, ...)
+public class LineageEdge {
+    private final String upstreamTable;
+    private final String downstreamTable;
+
+    @JsonCreator
+    public LineageEdge(@JsonProperty("upstreamTable") String upstreamTable,
+                       @JsonProperty("downstreamTable") String downstreamTable) {
+        this.upstreamTable = upstreamTable;
+        this.downstreamTable = downstreamTable;
+    }
+
+    // 一条SQL产生的边：每个叶子节点表指向目标表，忽略自引用
+    public static List<LineageEdge> fromLineage(LineageResult lineage, String targetTable) {
+        List<LineageEdge> edges = new ArrayList<>();
+        for (String table : lineage.getTables()) {
+            if (!table.equals(targetTable)) {
+                edges.add(new LineageEdge(table, targetTable));
+            }
+        }
+        return edges;
+    }
+
+    public String getUpstreamTable() {
+        return upstreamTable;
+    }
+
+    public String getDownstreamTable() {
+        return downstreamTable;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LineageEdge)) {
+            return false;
+        }
+        LineageEdge that = (LineageEdge) o;
+        return upstreamTable.equals(that.upstreamTable) && downstreamTable.equals(that.downstreamTable);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(upstreamTable, downstreamTable);
+    }
+
+    @Override
+    public String toString() {
+        return downstreamTable + " -> " + upstreamTable;
+    }
+}
@@ -0,0 +1,280 @@
+package com.dataagent.lineage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.service.DataHubClient;
+
+/**
+ * 异步写入表级血缘：边先进入有界队列，后台线程按批大小或刷新间隔批量调用DataHubClient.createLineage。
+ * 去重窗口内重复出现的边直接丢弃；队列满时emit阻塞调用方，由此向上游施加背压。
+ * 写入失败的批次按指数退避重试，重试期间队列继续积压，背压照常生效；重试用完才丢弃并计数。
+ * 目前只有查询日志回放使用，不注册为Spring bean，避免应用里空转一个刷新线程。
+ */
+public class LineageEmitter implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(LineageEmitter.class);
+    private static final String PROPERTY_PREFIX = "datahub.lineage-emitter.";
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    public static final long DEFAULT_DEDUP_WINDOW_MILLIS = 600_000;
+    public static final int DEFAULT_MAX_RETRIES = 5;
+    public static final long DEFAULT_RETRY_BACKOFF_MILLIS = 200;
+    // 等待新边时最长阻塞这么久就检查一次是否已关闭
+    private static final long CLOSE_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final DataHubClient dataHubClient;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long dedupWindowNanos;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    private final BlockingQueue<LineageEdge> queue;
+    // 边 -> 最近一次被接受的时间，超过去重窗口的条目由刷新线程清理
+    private final ConcurrentMap<LineageEdge, Long> recentEdges = new ConcurrentHashMap<>();
+    private final Thread flusher;
+    // emit持有读锁完成检查和入队，close持有写锁切换状态，保证关闭后不会有边留在队列里
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private volatile boolean running = true;
+    private long lastEvictionNanos = System.nanoTime();
+
+    private final LongAdder emittedEdges = new LongAdder();
+    private final LongAdder duplicateEdges = new LongAdder();
+    private final LongAdder flushedEdges = new LongAdder();
+    private final LongAdder droppedEdges = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder flushCount = new LongAdder();
+    private final LongAdder totalFlushNanos = new LongAdder();
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    public LineageEmitter(DataHubClient dataHubClient, int queueCapacity, int batchSize, long flushIntervalMillis,
+                          long dedupWindowMillis, int maxRetries, long retryBackoffMillis) {
+        this.dataHubClient = dataHubClient;
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.dedupWindowNanos = TimeUnit.MILLISECONDS.toNanos(dedupWindowMillis);
+        this.maxRetries = maxRetries;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.flusher = new Thread(this::runFlusher, "lineage-emitter");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // 参数从 datahub.lineage-emitter.* 系统属性读取，未设置的取默认值
+    public static LineageEmitter fromSystemProperties(DataHubClient dataHubClient) {
+        return new LineageEmitter(dataHubClient,
+            Integer.getInteger(PROPERTY_PREFIX + "queue-capacity", DEFAULT_QUEUE_CAPACITY),
+            Integer.getInteger(PROPERTY_PREFIX + "batch-size", DEFAULT_BATCH_SIZE),
+            Long.getLong(PROPERTY_PREFIX + "flush-interval-ms", DEFAULT_FLUSH_INTERVAL_MILLIS),
+            Long.getLong(PROPERTY_PREFIX + "dedup-window-ms", DEFAULT_DEDUP_WINDOW_MILLIS),
+            Integer.getInteger(PROPERTY_PREFIX + "max-retries", DEFAULT_MAX_RETRIES),
+            Long.getLong(PROPERTY_PREFIX + "retry-backoff-ms", DEFAULT_RETRY_BACKOFF_MILLIS));
+    }
+
+    // 返回false表示该边在去重窗口内已经写过；队列满时阻塞直到有空间
+    public boolean emit(LineageEdge edge) throws InterruptedException {
+        closeLock.readLock().lockInterruptibly();
+        try {
+            if (!running) {
+                throw new IllegalStateException("Lineage emitter is closed");
+            }
+            long now = System.nanoTime();
+            boolean[] accepted = new boolean[1];
+            recentEdges.compute(edge, (key, acceptedAt) -> {
+                if (acceptedAt != null && now - acceptedAt < dedupWindowNanos) {
+                    return acceptedAt;
+                }
+                accepted[0] = true;
+                return now;
+            });
+            if (!accepted[0]) {
+                duplicateEdges.increment();
+                return false;
+            }
+            try {
+                queue.put(edge);
+            } catch (InterruptedException e) {
+                recentEdges.remove(edge, now);
+                throw e;
+            }
+            emittedEdges.increment();
+            return true;
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    public int emitAll(Collection<LineageEdge> edges) throws InterruptedException {
+        int accepted = 0;
+        for (LineageEdge edge : edges) {
+            if (emit(edge)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public LineageEmitterStats getStats() {
+        long flushes = flushCount.sum();
+        double averageFlushMillis = flushes == 0 ? 0 : totalFlushNanos.sum() / (double) flushes / 1_000_000;
+        return new LineageEmitterStats(queue.size(), queueCapacity, emittedEdges.sum(), duplicateEdges.sum(),
+            flushedEdges.sum(), droppedEdges.sum(), retryCount.sum(), flushes, lastFlushNanos / 1_000_000.0,
+            maxFlushNanos / 1_000_000.0, averageFlushMillis);
+    }
+
+    // 停止接收新边，等待队列中剩余的边全部写出
+    @Override
+    public void close() {
+        // 等正在入队的emit全部结束后再切换状态，之后不会再有新边进入队列
+        closeLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            // 刷新线程会继续把队列写完，这里只是不再等待
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while closing lineage emitter, {} edges still queued", queue.size());
+            return;
+        }
+        List<LineageEdge> remaining = new ArrayList<>();
+        while (queue.drainTo(remaining, batchSize) > 0) {
+            flush(remaining);
+            remaining.clear();
+        }
+    }
+
+    private void runFlusher() {
+        List<LineageEdge> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                LineageEdge first = poll(System.nanoTime() + flushIntervalNanos);
+                if (first != null) {
+                    batch.add(first);
+                    collectBatch(batch);
+                    flush(batch);
+                    batch.clear();
+                }
+                evictExpiredEdges();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    // 凑满一批或者从第一条边入队起等满刷新间隔
+    private void collectBatch(List<LineageEdge> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushIntervalNanos;
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            if (batch.size() >= batchSize) {
+                return;
+            }
+            LineageEdge next = poll(deadline);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    // 关闭后不再等待，只取走队列中已有的边
+    private LineageEdge poll(long deadline) throws InterruptedException {
+        while (running) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            LineageEdge edge = queue.poll(Math.min(remaining, CLOSE_CHECK_NANOS), TimeUnit.NANOSECONDS);
+            if (edge != null) {
+                return edge;
+            }
+        }
+        return queue.poll();
+    }
+
+    private void flush(List<LineageEdge> batch) {
+        for (int attempt = 0; ; attempt++) {
+            long start = System.nanoTime();
+            try {
+                dataHubClient.createLineage(batch);
+                recordFlush(System.nanoTime() - start);
+                flushedEdges.add(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                recordFlush(System.nanoTime() - start);
+                if (attempt >= maxRetries || !backOff(attempt, batch.size(), e)) {
+                    drop(batch, attempt + 1, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    // 第n次重试前等待 retryBackoffMillis * 2^n，最多30秒；等待被中断时返回false，不再重试
+    private boolean backOff(int attempt, int batchSize, RuntimeException e) {
+        long backoffMillis = Math.min(30_000L, retryBackoffMillis << Math.min(attempt, 20));
+        retryCount.increment();
+        log.warn("Failed to write {} lineage edges (attempt {}), retrying in {} ms: {}",
+            batchSize, attempt + 1, backoffMillis, e.getMessage());
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoffMillis);
+            return true;
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void drop(List<LineageEdge> batch, int attempts, RuntimeException e) {
+        log.error("Dropping {} lineage edges after {} attempts: {} (first edges: {})", batch.size(), attempts,
+            e.getMessage(), batch.subList(0, Math.min(10, batch.size())));
+        droppedEdges.add(batch.size());
+        // 丢弃的边移出去重窗口，下次出现时会重新写入
+        for (LineageEdge edge : batch) {
+            recentEdges.remove(edge);
+        }
+    }
+
+    private void recordFlush(long elapsed) {
+        flushCount.increment();
+        totalFlushNanos.add(elapsed);
+        lastFlushNanos = elapsed;
+        if (elapsed > maxFlushNanos) {
+            maxFlushNanos = elapsed;
+        }
+    }
+
+    private void evictExpiredEdges() {
+        long now = System.nanoTime();
+        if (now - lastEvictionNanos < Math.min(dedupWindowNanos, TimeUnit.SECONDS.toNanos(10))) {
+            return;
+        }
+        lastEvictionNanos = now;
+        recentEdges.values().removeIf(acceptedAt -> now - acceptedAt >= dedupWindowNanos);
+    }
+}
@@ -0,0 +1,75 @@
+package com.dataagent.lineage;
+
+public class LineageEmitterStats {
+    private final int queueDepth;
+    private final int queueCapacity;
+    private final long emittedEdges;
+    private final long duplicateEdges;
+    private final long flushedEdges;
+    private final long droppedEdges;
+    private final long retryCount;
+    private final long flushCount;
+    private final double lastFlushMillis;
+    private final double maxFlushMillis;
+    private final double averageFlushMillis;
+
+    public LineageEmitterStats(int queueDepth, int queueCapacity, long emittedEdges, long duplicateEdges,
+                               long flushedEdges, long droppedEdges, long retryCount, long flushCount,
+                               double lastFlushMillis, double maxFlushMillis, double averageFlushMillis) {
+        this.queueDepth = queueDepth;
+        this.queueCapacity = queueCapacity;
+        this.emittedEdges = emittedEdges;
+        this.duplicateEdges = duplicateEdges;
+        this.flushedEdges = flushedEdges;
+        this.droppedEdges = droppedEdges;
+        this.retryCount = retryCount;
+        this.flushCount = flushCount;
+        this.lastFlushMillis = lastFlushMillis;
+        this.maxFlushMillis = maxFlushMillis;
+        this.averageFlushMillis = averageFlushMillis;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getEmittedEdges() {
+        return emittedEdges;
+    }
+
+    public long getDuplicateEdges() {
+        return duplicateEdges;
+    }
+
+    public long getFlushedEdges() {
+        return flushedEdges;
+    }
+
+    public long getDroppedEdges() {
+        return droppedEdges;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    public long getFlushCount() {
+        return flushCount;
+    }
+
+    public double getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+
+    public double getMaxFlushMillis() {
+        return maxFlushMillis;
+    }
+
+    public double getAverageFlushMillis() {
+        return averageFlushMillis;
+    }
+}
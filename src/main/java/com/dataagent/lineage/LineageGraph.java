@@ -0,0 +1,125 @@
+package com.dataagent.lineage;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 内存中的表级血缘图。每条边记录来自哪个来源（例如SQL文件），
+ * 来源变化时只替换它自己的边；同一条边被多个来源产生时按引用计数保留。
+ */
+public class LineageGraph {
+    private final Map<String, Set<LineageEdge>> edgesBySource = new HashMap<>();
+    private final Map<LineageEdge, Integer> edgeRefCounts = new HashMap<>();
+    private final Map<String, Set<String>> upstream = new HashMap<>();
+    private final Map<String, Set<String>> downstream = new HashMap<>();
+
+    // 用新的边替换某个来源之前的边，返回边发生变化的表
+    public synchronized Set<String> replaceSource(String source, Collection<LineageEdge> edges) {
+        Set<LineageEdge> oldEdges = edgesBySource.getOrDefault(source, Collections.emptySet());
+        Set<LineageEdge> newEdges = new LinkedHashSet<>(edges);
+
+        Set<String> changedTables = new LinkedHashSet<>();
+        for (LineageEdge edge : oldEdges) {
+            if (!newEdges.contains(edge) && release(edge)) {
+                changedTables.add(edge.getDownstreamTable());
+            }
+        }
+        for (LineageEdge edge : newEdges) {
+            if (!oldEdges.contains(edge) && retain(edge)) {
+                changedTables.add(edge.getDownstreamTable());
+            }
+        }
+
+        if (newEdges.isEmpty()) {
+            edgesBySource.remove(source);
+        } else {
+            edgesBySource.put(source, newEdges);
+        }
+        return changedTables;
+    }
+
+    public Set<String> removeSource(String source) {
+        return replaceSource(source, Collections.emptySet());
+    }
+
+    // 所有直接或间接依赖给定表的下游表，不包括给定的表本身
+    public synchronized Set<String> downstreamOf(Collection<String> tables) {
+        Set<String> visited = new LinkedHashSet<>();
+        Deque<String> queue = new ArrayDeque<>(tables);
+        while (!queue.isEmpty()) {
+            for (String next : downstream.getOrDefault(queue.poll(), Collections.emptySet())) {
+                if (visited.add(next)) {
+                    queue.add(next);
+                }
+            }
+        }
+        visited.removeAll(tables);
+        return visited;
+    }
+
+    public synchronized Set<String> getUpstream(String table) {
+        return new LinkedHashSet<>(upstream.getOrDefault(table, Collections.emptySet()));
+    }
+
+    public synchronized Set<String> getDownstream(String table) {
+        return new LinkedHashSet<>(downstream.getOrDefault(table, Collections.emptySet()));
+    }
+
+    public synchronized Set<LineageEdge> getEdges() {
+        return new LinkedHashSet<>(edgeRefCounts.keySet());
+    }
+
+    public synchronized int getEdgeCount() {
+        return edgeRefCounts.size();
+    }
+
+    public synchronized Set<String> getSources() {
+        return new LinkedHashSet<>(edgesBySource.keySet());
+    }
+
+    public synchronized int getSourceCount() {
+        return edgesBySource.size();
+    }
+
+    // 引用计数加一，边第一次出现时返回true
+    private boolean retain(LineageEdge edge) {
+        if (edgeRefCounts.merge(edge, 1, Integer::sum) > 1) {
+            return false;
+        }
+        upstream.computeIfAbsent(edge.getDownstreamTable(), k -> new LinkedHashSet<>()).add(edge.getUpstreamTable());
+        downstream.computeIfAbsent(edge.getUpstreamTable(), k -> new LinkedHashSet<>()).add(edge.getDownstreamTable());
+        return true;
+    }
+
+    // 引用计数减一，边被最后一个来源移除时返回true
+    private boolean release(LineageEdge edge) {
+        Integer count = edgeRefCounts.get(edge);
+        if (count == null) {
+            return false;
+        }
+        if (count > 1) {
+            edgeRefCounts.put(edge, count - 1);
+            return false;
+        }
+        edgeRefCounts.remove(edge);
+        removeAdjacency(upstream, edge.getDownstreamTable(), edge.getUpstreamTable());
+        removeAdjacency(downstream, edge.getUpstreamTable(), edge.getDownstreamTable());
+        return true;
+    }
+
+    private void removeAdjacency(Map<String, Set<String>> adjacency, String from, String to) {
+        Set<String> tables = adjacency.get(from);
+        if (tables != null) {
+            tables.remove(to);
+            if (tables.isEmpty()) {
+                adjacency.remove(from);
+            }
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.dataagent.service;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import com.dataagent.lineage.LineageEdge;
+
 public interface DataHubClient {
     Optional<Map<String, String>> getTableSchema(String projectId, String datasetId, String tableId);
-} 
\ No newline at end of file
+
+    // 批量写入表级血缘关系
+    void createLineage(List<LineageEdge> edges);
+}
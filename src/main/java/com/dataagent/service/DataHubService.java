@@ -4,11 +4,16 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.dataagent.diagnostics.SchemaLookupEvent;
+
 @Service
 public class DataHubService {
+    private static final Logger log = LoggerFactory.getLogger(DataHubService.class);
 
     private final DataHubClient dataHubClient;
 
@@ -19,6 +24,8 @@ public class DataHubService {
 
     public Map<String, String> getTableSchema(String projectId, String datasetId, String tableId) {
         Map<String, String> schema = new HashMap<>();
+        SchemaLookupEvent event = new SchemaLookupEvent();
+        event.begin();
         try {
             Optional<Map<String, String>> schemaOpt = dataHubClient.getTableSchema(projectId, datasetId, tableId);
             if (schemaOpt.isPresent()) {
@@ -27,6 +34,15 @@ public class DataHubService {
         } catch (Exception e) {
             // Log error and return empty schema for now
             // In production, you might want to handle this differently
+            log.warn("Schema lookup failed for {}.{}.{}: {}", projectId, datasetId, tableId, e.getMessage());
+            log.debug("Schema lookup failure details", e);
+            event.failed = true;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.table = String.format("%s.%s.%s", projectId, datasetId, tableId);
+            event.fieldCount = schema.size();
+            event.commit();
         }
         return schema;
     }
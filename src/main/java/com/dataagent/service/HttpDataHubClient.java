@@ -0,0 +1,212 @@
+package com.dataagent.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.lineage.LineageEdge;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 通过DataHub GraphQL接口查询表schema、写入表级血缘。
+ * 底层HttpClient复用keep-alive连接；同一张表的并发查询只会发出一次请求，其余调用等待同一个结果。
+ */
+public class HttpDataHubClient implements DataHubClient {
+    private static final Logger log = LoggerFactory.getLogger(HttpDataHubClient.class);
+
+    private static final String GRAPHQL_PATH = "/api/graphql";
+    private static final String SCHEMA_QUERY =
+        "query getDatasetSchema($urn: String!) { dataset(urn: $urn) { " +
+        "schemaMetadata { fields { fieldPath nativeDataType } } } }";
+    private static final String LINEAGE_MUTATION =
+        "mutation updateLineage($input: UpdateLineageInput!) { updateLineage(input: $input) }";
+    private static final String DATASET_URN_FORMAT = "urn:li:dataset:(urn:li:dataPlatform:bigquery,%s,%s)";
+
+    private final URI graphQlEndpoint;
+    private final String token;
+    private final String fabric;
+    private final Duration requestTimeout;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentMap<String, CompletableFuture<Optional<Map<String, String>>>> inFlight =
+        new ConcurrentHashMap<>();
+
+    public HttpDataHubClient(String serverUrl, String token, String environment,
+                             Duration connectTimeout, Duration requestTimeout) {
+        String baseUrl = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+        this.graphQlEndpoint = URI.create(baseUrl + GRAPHQL_PATH);
+        this.token = token;
+        this.fabric = environment.toUpperCase();
+        this.requestTimeout = requestTimeout;
+        // HTTP/1.1下HttpClient自带按host的连接池，空闲连接保持keep-alive供后续请求复用
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(connectTimeout)
+            .build();
+    }
+
+    @Override
+    public Optional<Map<String, String>> getTableSchema(String projectId, String datasetId, String tableId) {
+        String tableName = String.format("%s.%s.%s", projectId, datasetId, tableId);
+
+        CompletableFuture<Optional<Map<String, String>>> pending = new CompletableFuture<>();
+        CompletableFuture<Optional<Map<String, String>>> existing = inFlight.putIfAbsent(tableName, pending);
+        if (existing != null) {
+            // 已有相同的请求在进行中，直接等待它的结果
+            return await(tableName, existing);
+        }
+
+        try {
+            Optional<Map<String, String>> schema = fetchTableSchema(tableName);
+            pending.complete(schema);
+            return schema;
+        } catch (RuntimeException | Error e) {
+            pending.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(tableName, pending);
+        }
+    }
+
+    // 一批边合并成一次updateLineage请求
+    @Override
+    public void createLineage(List<LineageEdge> edges) {
+        if (edges.isEmpty()) {
+            return;
+        }
+        List<Map<String, String>> edgesToAdd = new ArrayList<>(edges.size());
+        for (LineageEdge edge : edges) {
+            Map<String, String> urns = new HashMap<>();
+            urns.put("upstreamUrn", datasetUrn(edge.getUpstreamTable()));
+            urns.put("downstreamUrn", datasetUrn(edge.getDownstreamTable()));
+            edgesToAdd.add(urns);
+        }
+        Map<String, Object> input = new HashMap<>();
+        input.put("edgesToAdd", edgesToAdd);
+        input.put("edgesToRemove", new ArrayList<>());
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("input", input);
+
+        String description = edges.size() + " lineage edges";
+        JsonNode root = readJson(description, post(description, toJson(LINEAGE_MUTATION, variables)));
+        checkErrors(description, root);
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private Optional<Map<String, String>> fetchTableSchema(String tableName) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("urn", datasetUrn(tableName));
+        return parseSchemaResponse(tableName, post(tableName, toJson(SCHEMA_QUERY, variables)));
+    }
+
+    private String post(String description, String json) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(graphQlEndpoint)
+            .timeout(requestTimeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json, StandardCharsets.UTF_8));
+        if (token != null && !token.trim().isEmpty()) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        HttpRequest request = builder.build();
+
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException("DataHub request failed for " + description, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during DataHub request for " + description, e);
+        }
+
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(String.format("DataHub returned HTTP %d for %s",
+                response.statusCode(), description));
+        }
+        return response.body();
+    }
+
+    private String datasetUrn(String tableName) {
+        return String.format(DATASET_URN_FORMAT, tableName, fabric);
+    }
+
+    private String toJson(String query, Map<String, Object> variables) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        body.put("variables", variables);
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Optional<Map<String, String>> parseSchemaResponse(String tableName, String body) {
+        JsonNode root = readJson(tableName, body);
+        checkErrors(tableName, root);
+
+        JsonNode fields = root.path("data").path("dataset").path("schemaMetadata").path("fields");
+        if (!fields.isArray()) {
+            log.debug("No schema found in DataHub for {}", tableName);
+            return Optional.empty();
+        }
+        Map<String, String> schema = new LinkedHashMap<>();
+        for (JsonNode field : fields) {
+            schema.put(field.path("fieldPath").asText(), field.path("nativeDataType").asText());
+        }
+        return Optional.of(schema);
+    }
+
+    private JsonNode readJson(String description, String body) {
+        try {
+            return objectMapper.readTree(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid DataHub response for " + description, e);
+        }
+    }
+
+    private void checkErrors(String description, JsonNode root) {
+        JsonNode errors = root.path("errors");
+        if (errors.isArray() && errors.size() > 0) {
+            throw new IllegalStateException(String.format("DataHub returned errors for %s: %s",
+                description, errors.get(0).path("message").asText()));
+        }
+    }
+
+    // 领头请求自身受连接超时和请求超时约束，无论成功失败都会完成future，这里不再另设超时
+    private Optional<Map<String, String>> await(String tableName, CompletableFuture<Optional<Map<String, String>>> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("DataHub schema request failed for " + tableName, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching schema for " + tableName, e);
+        }
+    }
+}
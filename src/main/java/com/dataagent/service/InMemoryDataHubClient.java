@@ -1,14 +1,21 @@
 package com.dataagent.service;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.stereotype.Component;
 
+import com.dataagent.lineage.LineageEdge;
+
 @Component
 public class InMemoryDataHubClient implements DataHubClient {
     private final Map<String, Map<String, String>> schemaCache = new HashMap<>();
+    private final Map<String, Set<String>> lineage = new ConcurrentHashMap<>();
 
     public InMemoryDataHubClient() {
         // 初始化一些测试数据
@@ -57,6 +64,19 @@ public class InMemoryDataHubClient implements DataHubClient {
         return Optional.ofNullable(schemaCache.get(key));
     }
 
+    @Override
+    public void createLineage(List<LineageEdge> edges) {
+        for (LineageEdge edge : edges) {
+            lineage.computeIfAbsent(edge.getDownstreamTable(), k -> ConcurrentHashMap.newKeySet())
+                .add(edge.getUpstreamTable());
+        }
+    }
+
+    public Set<String> getUpstreamTables(String tableName) {
+        Set<String> upstream = lineage.get(tableName);
+        return upstream == null ? Collections.emptySet() : Collections.unmodifiableSet(upstream);
+    }
+
     // 用于测试的辅助方法
     public void addTableSchema(String projectId, String datasetId, String tableId, Map<String, String> schema) {
         String key = String.format("%s.%s.%s", projectId, datasetId, tableId);
@@ -65,6 +85,7 @@ public class InMemoryDataHubClient implements DataHubClient {
 
     public void clearCache() {
         schemaCache.clear();
+        lineage.clear();
         initializeTestData();
     }
 } 
\ No newline at end of file
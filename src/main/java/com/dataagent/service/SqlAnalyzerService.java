@@ -1,5 +1,6 @@
 package com.dataagent.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import com.dataagent.SqlLineageAnalyzer;
@@ -9,8 +10,9 @@ public class SqlAnalyzerService {
 
     private final SqlLineageAnalyzer analyzer;
 
-    public SqlAnalyzerService() {
-        this.analyzer = new SqlLineageAnalyzer();
+    @Autowired
+    public SqlAnalyzerService(SqlLineageAnalyzer analyzer) {
+        this.analyzer = analyzer;
     }
 
     public String analyzeSql(String sql) {
@@ -0,0 +1,92 @@
+package com.dataagent.shard;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// 基于TCP的按行JSON连接，本机和跨机器使用同一套协议；单条消息超过上限时直接报错，不会无限制地缓存对端数据
+public class ShardConnection implements Closeable {
+    public static final int DEFAULT_MAX_MESSAGE_BYTES = 64 * 1024 * 1024;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final Socket socket;
+    private final InputStream input;
+    private final BufferedWriter writer;
+    private final int maxMessageBytes;
+    private final byte[] buffer = new byte[8192];
+    private int position;
+    private int limit;
+
+    public ShardConnection(Socket socket) throws IOException {
+        this(socket, DEFAULT_MAX_MESSAGE_BYTES);
+    }
+
+    public ShardConnection(Socket socket, int maxMessageBytes) throws IOException {
+        this.socket = socket;
+        this.input = socket.getInputStream();
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        this.maxMessageBytes = maxMessageBytes;
+    }
+
+    public void send(ShardMessage message) throws IOException {
+        writer.write(OBJECT_MAPPER.writeValueAsString(message));
+        writer.newLine();
+        writer.flush();
+    }
+
+    public ShardMessage receive() throws IOException {
+        return receive(maxMessageBytes);
+    }
+
+    // 读取一行并解析，这一行超过maxBytes字节时抛出IOException，调用方应关闭连接
+    public ShardMessage receive(int maxBytes) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            if (position == limit) {
+                int read = input.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("Connection closed by " + socket.getRemoteSocketAddress());
+                }
+                position = 0;
+                limit = read;
+            }
+            int end = position;
+            while (end < limit && buffer[end] != '\n') {
+                end++;
+            }
+            if (line.size() + (end - position) > maxBytes) {
+                throw new IOException("Message from " + socket.getRemoteSocketAddress() + " exceeds " + maxBytes
+                    + " bytes");
+            }
+            line.write(buffer, position, end - position);
+            if (end < limit) {
+                position = end + 1;
+                return OBJECT_MAPPER.readValue(line.toByteArray(), ShardMessage.class);
+            }
+            position = limit;
+        }
+    }
+
+    public void setReadTimeout(int millis) throws IOException {
+        socket.setSoTimeout(millis);
+    }
+
+    public String getRemoteAddress() {
+        return String.valueOf(socket.getRemoteSocketAddress());
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,414 @@
+package com.dataagent.shard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.lineage.LineageEdge;
+import com.dataagent.lineage.LineageGraph;
+
+/**
+ * 把SQL语料切成分片分发给多个worker进程，并合并它们返回的部分血缘图和列索引。
+ * worker断开或超时未返回时，它手上的分片重新排队交给其他worker，最多尝试maxAttempts次。
+ * 分片按需从输入中读取，协调者只在内存中保留处理中的分片。
+ * worker必须在READY中带上共享令牌，令牌不符的连接直接关闭。
+ */
+public class ShardCoordinator implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    public static final String TOKEN_ENV = "SHARD_TOKEN";
+    // 认证前对端只能发一条很短的READY消息，并且要尽快发来
+    private static final int MAX_HELLO_BYTES = 4096;
+    private static final int HELLO_TIMEOUT_MILLIS = 10_000;
+
+    private final Iterator<String> statements;
+    private final byte[] token;
+    private final int shardSize;
+    private final int maxAttempts;
+    private final int shardTimeoutMillis;
+
+    private final LineageGraph graph = new LineageGraph();
+    private final Map<String, Set<String>> columnIndex = new HashMap<>();
+
+    // 以下字段由lock保护
+    private final Object lock = new Object();
+    private final Deque<Shard> retries = new ArrayDeque<>();
+    private long nextShardId;
+    private int inFlight;
+    private boolean exhausted;
+    private long completedShards;
+    private long failedShards;
+    private long retryCount;
+    private long statementCount;
+    private long failedStatementCount;
+
+    private ServerSocket serverSocket;
+
+    public ShardCoordinator(Iterator<String> statements, String token, int shardSize, int maxAttempts,
+                            int shardTimeoutMillis) {
+        this.statements = statements;
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        this.shardSize = shardSize;
+        this.maxAttempts = maxAttempts;
+        this.shardTimeoutMillis = shardTimeoutMillis;
+    }
+
+    // 开始接受worker连接，返回实际监听的端口
+    public int start(InetAddress bindAddress, int port) throws IOException {
+        synchronized (lock) {
+            exhausted = !statements.hasNext();
+        }
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+        Thread acceptor = new Thread(this::acceptWorkers, "shard-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Shard coordinator listening on {}", serverSocket.getLocalSocketAddress());
+        return serverSocket.getLocalPort();
+    }
+
+    public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (lock) {
+            while (!isComplete()) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                lock.wait(remainingMillis);
+            }
+            return true;
+        }
+    }
+
+    public LineageGraph getGraph() {
+        return graph;
+    }
+
+    public Map<String, Set<String>> getColumnIndex() {
+        synchronized (lock) {
+            Map<String, Set<String>> copy = new HashMap<>();
+            columnIndex.forEach((table, columns) -> copy.put(table, new LinkedHashSet<>(columns)));
+            return copy;
+        }
+    }
+
+    public long getCompletedShards() {
+        synchronized (lock) {
+            return completedShards;
+        }
+    }
+
+    public long getFailedShards() {
+        synchronized (lock) {
+            return failedShards;
+        }
+    }
+
+    public long getRetryCount() {
+        synchronized (lock) {
+            return retryCount;
+        }
+    }
+
+    public long getStatementCount() {
+        synchronized (lock) {
+            return statementCount;
+        }
+    }
+
+    public long getFailedStatementCount() {
+        synchronized (lock) {
+            return failedStatementCount;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    private void acceptWorkers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread handler = new Thread(() -> serveWorker(socket), "shard-worker-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Failed to accept worker connection", e);
+                }
+            }
+        }
+    }
+
+    private void serveWorker(Socket socket) {
+        try (ShardConnection connection = new ShardConnection(socket)) {
+            connection.setReadTimeout(HELLO_TIMEOUT_MILLIS);
+            ShardMessage hello = connection.receive(MAX_HELLO_BYTES);
+            if (!ShardMessage.READY.equals(hello.getType())) {
+                log.warn("Unexpected first message {} from {}", hello.getType(), connection.getRemoteAddress());
+                return;
+            }
+            String workerId = hello.getWorkerId();
+            if (hello.getToken() == null
+                    || !MessageDigest.isEqual(token, hello.getToken().getBytes(StandardCharsets.UTF_8))) {
+                log.warn("Rejected worker {} from {}: invalid token", workerId, connection.getRemoteAddress());
+                return;
+            }
+            log.info("Worker {} connected from {}", workerId, connection.getRemoteAddress());
+            connection.setReadTimeout(shardTimeoutMillis);
+
+            Shard shard;
+            while ((shard = nextShard()) != null) {
+                try {
+                    connection.send(ShardMessage.shard(shard.id, shard.statements));
+                    ShardMessage result = connection.receive();
+                    if (!ShardMessage.RESULT.equals(result.getType()) || result.getShardId() == null
+                            || result.getShardId() != shard.id) {
+                        throw new IOException("Unexpected reply " + result.getType() + " for shard " + shard.id);
+                    }
+                    complete(shard, result);
+                } catch (IOException | RuntimeException e) {
+                    log.warn("Worker {} failed on shard {}: {}", workerId, shard.id, e.getMessage());
+                    fail(shard);
+                    return;
+                }
+            }
+            connection.send(ShardMessage.shutdown());
+        } catch (IOException e) {
+            log.warn("Lost connection to worker: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 优先返回需要重试的分片；输入读完但还有分片在处理时等待，可能会有分片重新排队
+    private Shard nextShard() throws InterruptedException {
+        synchronized (lock) {
+            while (true) {
+                Shard shard = retries.poll();
+                if (shard == null && !exhausted) {
+                    shard = readShard();
+                }
+                if (shard != null) {
+                    inFlight++;
+                    return shard;
+                }
+                if (inFlight == 0) {
+                    return null;
+                }
+                lock.wait();
+            }
+        }
+    }
+
+    private Shard readShard() {
+        List<String> batch = new ArrayList<>(shardSize);
+        while (batch.size() < shardSize && statements.hasNext()) {
+            String statement = statements.next();
+            if (!statement.trim().isEmpty()) {
+                batch.add(statement);
+            }
+        }
+        if (!statements.hasNext()) {
+            exhausted = true;
+        }
+        return batch.isEmpty() ? null : new Shard(nextShardId++, batch);
+    }
+
+    private void complete(Shard shard, ShardMessage result) {
+        List<LineageEdge> edges = result.getEdges() != null ? result.getEdges() : Collections.emptyList();
+        graph.replaceSource("shard-" + shard.id, edges);
+        synchronized (lock) {
+            if (result.getColumns() != null) {
+                result.getColumns().forEach((table, columns) ->
+                    columnIndex.computeIfAbsent(table, k -> new LinkedHashSet<>()).addAll(columns));
+            }
+            statementCount += result.getStatementCount() != null ? result.getStatementCount() : 0;
+            failedStatementCount += result.getFailedCount() != null ? result.getFailedCount() : 0;
+            completedShards++;
+            inFlight--;
+            lock.notifyAll();
+        }
+    }
+
+    private void fail(Shard shard) {
+        synchronized (lock) {
+            inFlight--;
+            shard.attempts++;
+            if (shard.attempts < maxAttempts) {
+                retryCount++;
+                retries.add(shard);
+            } else {
+                log.error("Giving up on shard {} after {} attempts", shard.id, shard.attempts);
+                failedShards++;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private boolean isComplete() {
+        return exhausted && inFlight == 0 && retries.isEmpty();
+    }
+
+    private static class Shard {
+        private final long id;
+        private final List<String> statements;
+        private int attempts;
+
+        private Shard(long id, List<String> statements) {
+            this.id = id;
+            this.statements = statements;
+        }
+    }
+
+    static Process launchLocalWorker(int port, String classpath, int parallelism, String token) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        String jvmOptions = System.getProperty("shard.worker.jvm-options", "");
+        for (String option : jvmOptions.trim().split("\\s+")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.add("-Dshard.worker.parallelism=" + parallelism);
+        command.add("-cp");
+        command.add(classpath);
+        command.add(ShardWorker.class.getName());
+        command.add("127.0.0.1");
+        command.add(String.valueOf(port));
+        ProcessBuilder builder = new ProcessBuilder(command).inheritIO();
+        // 令牌通过环境变量传给子进程，不出现在命令行里
+        builder.environment().put(TOKEN_ENV, token);
+        return builder.start();
+    }
+
+    // 第n次重启前等待的时间，从1秒开始翻倍，最多30秒
+    static long restartBackoffMillis(int restarts) {
+        return Math.min(30_000L, 1000L << Math.min(restarts, 5));
+    }
+
+    private static String createToken() {
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+        return token.toString();
+    }
+
+    /**
+     * 参数: <query-log> <local-workers> [port] [shard-size]；local-workers为0时只等待远程worker连接。
+     * 系统属性:
+     * shard.bind-address 监听地址，默认127.0.0.1，远程worker需要改成对外的地址；
+     * shard.worker.classpath 本地worker的classpath，默认与协调者相同；
+     * shard.worker.parallelism 每个本地worker的并行度，默认CPU核数除以本地worker数；
+     * shard.worker.max-restarts 本地worker异常退出后最多重启的次数，超过后整个任务失败；
+     * shard.max-attempts 每个分片最多分配几次，默认3；
+     * shard.timeout-ms 等待worker返回一个分片结果的最长时间，默认300000。
+     * 共享令牌从环境变量SHARD_TOKEN读取；未设置时只允许监听回环地址，并为本地worker随机生成。
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardCoordinator <query-log-file> <local-workers> [port] [shard-size]");
+            System.exit(1);
+        }
+        int workerCount = Integer.parseInt(args[1]);
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int shardSize = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        InetAddress bindAddress = InetAddress.getByName(System.getProperty("shard.bind-address", "127.0.0.1"));
+        String workerClasspath = System.getProperty("shard.worker.classpath", System.getProperty("java.class.path"));
+        int parallelism = Integer.getInteger("shard.worker.parallelism",
+            Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(1, workerCount)));
+        int maxRestarts = Integer.getInteger("shard.worker.max-restarts", 3);
+        int maxAttempts = Integer.getInteger("shard.max-attempts", 3);
+        int shardTimeoutMillis = Integer.getInteger("shard.timeout-ms", 300_000);
+
+        String token = System.getenv(TOKEN_ENV);
+        if (token == null || token.isEmpty()) {
+            if (!bindAddress.isLoopbackAddress()) {
+                System.err.println("Set " + TOKEN_ENV + " before listening on " + bindAddress.getHostAddress());
+                System.exit(1);
+            }
+            token = createToken();
+        }
+
+        long start = System.nanoTime();
+        List<Process> workers = new ArrayList<>();
+        try (Stream<String> lines = Files.lines(Paths.get(args[0]), StandardCharsets.UTF_8);
+             ShardCoordinator coordinator =
+                 new ShardCoordinator(lines.iterator(), token, shardSize, maxAttempts, shardTimeoutMillis)) {
+            int boundPort = coordinator.start(bindAddress, port);
+
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(launchLocalWorker(boundPort, workerClasspath, parallelism, token));
+            }
+            int restarts = 0;
+            long nextRestartAt = 0;
+            while (!coordinator.awaitCompletion(1, TimeUnit.SECONDS)) {
+                // 异常退出的本地worker按退避间隔用新进程替换，它的分片已经重新排队；
+                // 重启次数用完说明worker环境本身有问题（classpath、JVM参数等），直接失败
+                for (int i = 0; i < workers.size(); i++) {
+                    Process worker = workers.get(i);
+                    if (worker.isAlive() || worker.exitValue() == 0 || System.currentTimeMillis() < nextRestartAt) {
+                        continue;
+                    }
+                    if (restarts >= maxRestarts) {
+                        throw new IllegalStateException(String.format(
+                            "Local worker exited with code %d after %d restarts, giving up",
+                            worker.exitValue(), restarts));
+                    }
+                    long backoff = restartBackoffMillis(restarts++);
+                    log.warn("Local worker exited with code {}, starting a replacement (restart {}/{}, next in {} ms)",
+                        worker.exitValue(), restarts, maxRestarts, backoff);
+                    workers.set(i, launchLocalWorker(boundPort, workerClasspath, parallelism, token));
+                    nextRestartAt = System.currentTimeMillis() + backoff;
+                }
+            }
+            for (Process worker : workers) {
+                worker.waitFor(10, TimeUnit.SECONDS);
+            }
+
+            long elapsedNanos = System.nanoTime() - start;
+            System.out.println("\nSharded Analysis Summary:");
+            System.out.println("=========================");
+            System.out.printf("Statements: %d (%d failed)%n", coordinator.getStatementCount(),
+                coordinator.getFailedStatementCount());
+            System.out.printf("Shards: %d completed, %d failed, %d retries%n", coordinator.getCompletedShards(),
+                coordinator.getFailedShards(), coordinator.getRetryCount());
+            System.out.printf("Lineage edges: %d%n", coordinator.getGraph().getEdgeCount());
+            System.out.printf("Indexed tables: %d%n", coordinator.getColumnIndex().size());
+            System.out.printf("Elapsed: %d ms (%.0f statements/s)%n", elapsedNanos / 1_000_000,
+                coordinator.getStatementCount() * 1e9 / elapsedNanos);
+        } finally {
+            workers.forEach(Process::destroy);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.dataagent.shard;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.dataagent.lineage.LineageEdge;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * 协调者和worker之间的消息，每条消息序列化成一行JSON。
+ * worker连接后发送带共享令牌的READY，协调者回复SHARD或SHUTDOWN，worker处理完一个分片后回复RESULT。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ShardMessage {
+    public static final String READY = "READY";
+    public static final String SHARD = "SHARD";
+    public static final String RESULT = "RESULT";
+    public static final String SHUTDOWN = "SHUTDOWN";
+
+    private String type;
+    private String workerId;
+    private String token;
+    private Long shardId;
+    private List<String> statements;
+    private List<LineageEdge> edges;
+    private Map<String, Set<String>> columns;
+    private Integer statementCount;
+    private Integer failedCount;
+
+    public static ShardMessage ready(String workerId, String token) {
+        ShardMessage message = new ShardMessage();
+        message.type = READY;
+        message.workerId = workerId;
+        message.token = token;
+        return message;
+    }
+
+    public static ShardMessage shard(long shardId, List<String> statements) {
+        ShardMessage message = new ShardMessage();
+        message.type = SHARD;
+        message.shardId = shardId;
+        message.statements = statements;
+        return message;
+    }
+
+    public static ShardMessage result(long shardId, List<LineageEdge> edges, Map<String, Set<String>> columns,
+                                      int statementCount, int failedCount) {
+        ShardMessage message = new ShardMessage();
+        message.type = RESULT;
+        message.shardId = shardId;
+        message.edges = edges;
+        message.columns = columns;
+        message.statementCount = statementCount;
+        message.failedCount = failedCount;
+        return message;
+    }
+
+    public static ShardMessage shutdown() {
+        ShardMessage message = new ShardMessage();
+        message.type = SHUTDOWN;
+        return message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public void setWorkerId(String workerId) {
+        this.workerId = workerId;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public Long getShardId() {
+        return shardId;
+    }
+
+    public void setShardId(Long shardId) {
+        this.shardId = shardId;
+    }
+
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    public void setStatements(List<String> statements) {
+        this.statements = statements;
+    }
+
+    public List<LineageEdge> getEdges() {
+        return edges;
+    }
+
+    public void setEdges(List<LineageEdge> edges) {
+        this.edges = edges;
+    }
+
+    public Map<String, Set<String>> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(Map<String, Set<String>> columns) {
+        this.columns = columns;
+    }
+
+    public Integer getStatementCount() {
+        return statementCount;
+    }
+
+    public void setStatementCount(Integer statementCount) {
+        this.statementCount = statementCount;
+    }
+
+    public Integer getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Integer failedCount) {
+        this.failedCount = failedCount;
+    }
+}
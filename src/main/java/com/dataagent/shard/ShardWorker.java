@@ -0,0 +1,123 @@
+package com.dataagent.shard;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.LineageResult;
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.lineage.LineageEdge;
+import com.dataagent.template.QueryLogProcessor;
+import com.dataagent.template.QueryTemplate;
+
+/**
+ * 分片分析的worker：连接协调者，循环领取分片、分析并返回部分血缘图和列索引。
+ * 同一个查询模板只分析一次，已经返回过的模板在后续分片中不再重复返回。
+ * 分片在worker自己的ForkJoinPool上并行分析，同一台机器上的多个worker按各自的并行度分摊CPU。
+ */
+public class ShardWorker {
+    private static final Logger log = LoggerFactory.getLogger(ShardWorker.class);
+
+    private final String workerId;
+    private final String token;
+    private final QueryLogProcessor processor;
+    // 并行度为1时不建线程池，直接在当前线程分析
+    private final ForkJoinPool pool;
+    // 模板指纹 -> 已经上报过的血缘组数（样本加上不同的分片表组合）
+    private final Map<Long, Integer> reportedLineages = new HashMap<>();
+
+    public ShardWorker(String workerId, String token, SqlLineageAnalyzer analyzer, int parallelism) {
+        this.workerId = workerId;
+        this.token = token;
+        this.processor = new QueryLogProcessor(analyzer);
+        this.pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+    }
+
+    // 处理分片直到协调者发送SHUTDOWN
+    public void run(String host, int port) throws IOException {
+        try (ShardConnection connection = new ShardConnection(new Socket(host, port))) {
+            connection.send(ShardMessage.ready(workerId, token));
+            while (true) {
+                ShardMessage message = connection.receive();
+                if (ShardMessage.SHUTDOWN.equals(message.getType())) {
+                    log.info("Worker {} finished: {} statements, {} templates",
+                        workerId, processor.getStatementCount(), processor.getTemplateCount());
+                    return;
+                }
+                if (ShardMessage.SHARD.equals(message.getType())) {
+                    connection.send(process(message));
+                }
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    ShardMessage process(ShardMessage shard) {
+        List<String> statements = shard.getStatements();
+        // 在自己的池里执行并行流，避免同机多个worker都按全部核数使用公共ForkJoinPool
+        List<QueryTemplate> templates = pool == null
+            ? statements.stream().map(processor::process).collect(Collectors.toList())
+            : pool.submit(() -> statements.parallelStream().map(processor::process).collect(Collectors.toList())).join();
+
+        Map<Long, QueryTemplate> analyzedTemplates = new LinkedHashMap<>();
+        int failedCount = 0;
+        for (QueryTemplate template : templates) {
+            if (template.getLineage() == null) {
+                failedCount++;
+            } else {
+                analyzedTemplates.putIfAbsent(template.getFingerprint(), template);
+            }
+        }
+
+        List<LineageResult> newLineages = new ArrayList<>();
+        for (QueryTemplate template : analyzedTemplates.values()) {
+            List<LineageResult> lineages = template.getLineages();
+            int reported = reportedLineages.getOrDefault(template.getFingerprint(), 0);
+            newLineages.addAll(lineages.subList(reported, lineages.size()));
+            reportedLineages.put(template.getFingerprint(), lineages.size());
+        }
+
+        List<LineageEdge> edges = new ArrayList<>();
+        Map<String, Set<String>> columns = new LinkedHashMap<>();
+        for (LineageResult lineage : newLineages) {
+            if (lineage.getTargetTable() != null) {
+                edges.addAll(LineageEdge.fromLineage(lineage, lineage.getTargetTable()));
+            }
+            lineage.getTableColumns().forEach((table, tableColumns) ->
+                columns.computeIfAbsent(table, k -> new LinkedHashSet<>()).addAll(tableColumns));
+        }
+
+        return ShardMessage.result(shard.getShardId(), edges, columns, templates.size(), failedCount);
+    }
+
+    // 共享令牌从环境变量SHARD_TOKEN读取，避免出现在进程命令行里；并行度由 -Dshard.worker.parallelism 指定
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: ShardWorker <coordinator-host> <coordinator-port>");
+            System.exit(1);
+        }
+        String token = System.getenv(ShardCoordinator.TOKEN_ENV);
+        if (token == null || token.isEmpty()) {
+            System.err.println("Set " + ShardCoordinator.TOKEN_ENV + " to the coordinator's shared token");
+            System.exit(1);
+        }
+        int parallelism = Integer.getInteger("shard.worker.parallelism", Runtime.getRuntime().availableProcessors());
+        String workerId = ManagementFactory.getRuntimeMXBean().getName();
+        new ShardWorker(workerId, token, new SqlLineageAnalyzer(), parallelism).run(args[0], Integer.parseInt(args[1]));
+    }
+}
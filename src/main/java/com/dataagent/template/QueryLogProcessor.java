@@ -0,0 +1,229 @@
+package com.dataagent.template;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.LineageResult;
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.lineage.LineageEdge;
+import com.dataagent.lineage.LineageEmitter;
+import com.dataagent.lineage.LineageEmitterStats;
+import com.dataagent.service.HttpDataHubClient;
+
+/**
+ * 按查询模板去重后处理查询日志：每个模板只对第一次出现的SQL做血缘分析，之后只累加次数。
+ * 模板里的日期分片表被归一化成 *，同一模板换了分片表（如 events_20240102）时，
+ * 把样本血缘里的分片表名替换成这次出现的表名，作为该模板的又一组血缘，不重新分析。
+ * 指定LineageEmitter时，每组带目标表的血缘边都会写入DataHub；emitter队列满时process会阻塞。
+ * 可以从多个线程并发调用 process。
+ */
+public class QueryLogProcessor {
+    private static final Logger log = LoggerFactory.getLogger(QueryLogProcessor.class);
+
+    private final SqlLineageAnalyzer analyzer;
+    private final QueryTemplateNormalizer normalizer;
+    private final LineageEmitter emitter;
+    private final ConcurrentMap<Long, QueryTemplate> templates = new ConcurrentHashMap<>();
+    private final LongAdder statementCount = new LongAdder();
+
+    public QueryLogProcessor(SqlLineageAnalyzer analyzer) {
+        this(analyzer, new QueryTemplateNormalizer());
+    }
+
+    public QueryLogProcessor(SqlLineageAnalyzer analyzer, QueryTemplateNormalizer normalizer) {
+        this(analyzer, normalizer, null);
+    }
+
+    public QueryLogProcessor(SqlLineageAnalyzer analyzer, QueryTemplateNormalizer normalizer, LineageEmitter emitter) {
+        this.analyzer = analyzer;
+        this.normalizer = normalizer;
+        this.emitter = emitter;
+    }
+
+    public QueryTemplate process(String sql) {
+        statementCount.increment();
+        List<String> shardNames = new ArrayList<>(2);
+        long fingerprint = normalizer.fingerprint(sql, shardNames);
+
+        QueryTemplate template = templates.get(fingerprint);
+        if (template == null) {
+            QueryTemplate created = new QueryTemplate(fingerprint, sql, shardNames);
+            template = templates.putIfAbsent(fingerprint, created);
+            if (template == null) {
+                // 模板第一次出现，由当前线程完成分析
+                analyze(created);
+                return created;
+            }
+        }
+        template.increment();
+        if (template.addShardNames(shardNames)) {
+            addShardLineage(template, sql, shardNames);
+        }
+        return template;
+    }
+
+    public long getStatementCount() {
+        return statementCount.sum();
+    }
+
+    public int getTemplateCount() {
+        return templates.size();
+    }
+
+    // 按出现次数从多到少排序
+    public List<QueryTemplate> getTemplates() {
+        List<QueryTemplate> result = new ArrayList<>(templates.values());
+        result.sort(Comparator.comparingLong(QueryTemplate::getOccurrences).reversed());
+        return result;
+    }
+
+    private void analyze(QueryTemplate template) {
+        LineageResult lineage;
+        try {
+            lineage = analyzer.analyze(template.getSampleSql());
+            template.complete(lineage);
+        } catch (Exception e) {
+            log.warn("Failed to analyze query template {}: {}",
+                Long.toHexString(template.getFingerprint()), e.getMessage());
+            template.fail(String.valueOf(e.getMessage()));
+            return;
+        }
+        emit(lineage);
+    }
+
+    private void addShardLineage(QueryTemplate template, String sql, List<String> shardNames) {
+        if (template.getError() != null) {
+            return;
+        }
+        LineageResult sample = template.getLineage();
+        Map<String, String> renames = sample == null ? null : shardRenames(template.getSampleShardNames(), shardNames);
+        LineageResult lineage;
+        if (renames != null) {
+            lineage = renameTables(sample, renames);
+        } else {
+            // 样本还在别的线程分析中，或者同一个分片表在样本里对应了不同的表，直接分析这条SQL
+            try {
+                lineage = analyzer.analyze(sql);
+            } catch (Exception e) {
+                log.warn("Failed to analyze shard of query template {}: {}",
+                    Long.toHexString(template.getFingerprint()), e.getMessage());
+                return;
+            }
+        }
+        template.addShardLineage(lineage);
+        emit(lineage);
+    }
+
+    // 样本分片表名 -> 本次出现的分片表名；同一个样本表名对应到不同表时返回null
+    private static Map<String, String> shardRenames(List<String> sampleShardNames, List<String> shardNames) {
+        Map<String, String> renames = new HashMap<>();
+        for (int i = 0; i < sampleShardNames.size(); i++) {
+            String previous = renames.putIfAbsent(sampleShardNames.get(i), shardNames.get(i));
+            if (previous != null && !previous.equals(shardNames.get(i))) {
+                return null;
+            }
+        }
+        return renames;
+    }
+
+    private static LineageResult renameTables(LineageResult lineage, Map<String, String> renames) {
+        Map<String, Set<String>> tableColumns = new LinkedHashMap<>();
+        lineage.getTableColumns().forEach((table, columns) ->
+            tableColumns.computeIfAbsent(renameTable(table, renames), k -> new LinkedHashSet<>()).addAll(columns));
+        String targetTable = lineage.getTargetTable() == null ? null : renameTable(lineage.getTargetTable(), renames);
+        return new LineageResult(targetTable, tableColumns, lineage.getCteCount());
+    }
+
+    // 按 . 分段替换，只替换整段相同的表名
+    private static String renameTable(String table, Map<String, String> renames) {
+        String[] segments = table.split("\\.", -1);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = renames.getOrDefault(segments[i], segments[i]);
+        }
+        return String.join(".", segments);
+    }
+
+    private void emit(LineageResult lineage) {
+        if (emitter != null && lineage.getTargetTable() != null) {
+            try {
+                emitter.emitAll(LineageEdge.fromLineage(lineage, lineage.getTargetTable()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while emitting lineage", e);
+            }
+        }
+    }
+
+    // 参数: <query-log> [top-n] [datahub-server-url]；给出DataHub地址时把血缘写入DataHub，令牌从DATAHUB_TOKEN读取，
+    // 写入参数用 -Ddatahub.lineage-emitter.* 调整；日志里双引号是字符串时加 -Dquery-log.double-quoted-strings=true
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: QueryLogProcessor <query-log-file> [top-n] [datahub-server-url]");
+            System.exit(1);
+        }
+        int topN = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        LineageEmitter emitter = null;
+        if (args.length > 2) {
+            String token = System.getenv("DATAHUB_TOKEN");
+            HttpDataHubClient client = new HttpDataHubClient(args[2], token != null ? token : "",
+                System.getProperty("datahub.environment", "PROD"), Duration.ofSeconds(2), Duration.ofSeconds(30));
+            emitter = LineageEmitter.fromSystemProperties(client);
+        }
+
+        QueryTemplateNormalizer normalizer =
+            new QueryTemplateNormalizer(Boolean.getBoolean("query-log.double-quoted-strings"));
+        QueryLogProcessor processor = new QueryLogProcessor(new SqlLineageAnalyzer(), normalizer, emitter);
+        long start = System.nanoTime();
+        try (Stream<String> lines = Files.lines(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            lines.parallel()
+                .filter(line -> !line.trim().isEmpty())
+                .forEach(processor::process);
+        } finally {
+            if (emitter != null) {
+                emitter.close();
+            }
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println("\nQuery Log Summary:");
+        System.out.println("==================");
+        System.out.printf("Statements: %d%n", processor.getStatementCount());
+        System.out.printf("Templates analyzed: %d%n", processor.getTemplateCount());
+        System.out.printf("Elapsed: %d ms%n", elapsedMillis);
+        if (emitter != null) {
+            LineageEmitterStats stats = emitter.getStats();
+            System.out.printf("Lineage edges: %d written, %d duplicates skipped, %d dropped, %d retries%n",
+                stats.getFlushedEdges(), stats.getDuplicateEdges(), stats.getDroppedEdges(), stats.getRetryCount());
+            System.out.printf("Lineage flushes: %d (avg %.1f ms, max %.1f ms)%n",
+                stats.getFlushCount(), stats.getAverageFlushMillis(), stats.getMaxFlushMillis());
+        }
+
+        System.out.println("\nTop Templates:");
+        processor.getTemplates().stream().limit(topN).forEach(template -> {
+            System.out.printf("  %016x  x%d%n", template.getFingerprint(), template.getOccurrences());
+            if (template.getLineage() != null) {
+                template.getTables().forEach(table -> System.out.println("    - " + table));
+            } else {
+                System.out.println("    ! " + template.getError());
+            }
+        });
+    }
+}
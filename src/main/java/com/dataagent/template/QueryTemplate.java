@@ -0,0 +1,93 @@
+package com.dataagent.template;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.dataagent.LineageResult;
+
+// 一个查询模板：第一次出现的SQL作为样本，后续出现只计数；换了日期分片表的出现另外记下分片表的血缘
+public class QueryTemplate {
+    private final long fingerprint;
+    private final String sampleSql;
+    private final List<String> sampleShardNames;
+    private final LongAdder occurrences = new LongAdder();
+    // 出现过的分片表名组合，每种组合只记一次血缘
+    private final Set<List<String>> shardNameSets = ConcurrentHashMap.newKeySet();
+    private final List<LineageResult> lineages = new CopyOnWriteArrayList<>();
+    private volatile LineageResult lineage;
+    private volatile String error;
+
+    QueryTemplate(long fingerprint, String sampleSql, List<String> sampleShardNames) {
+        this.fingerprint = fingerprint;
+        this.sampleSql = sampleSql;
+        this.sampleShardNames = sampleShardNames;
+        this.shardNameSets.add(sampleShardNames);
+        this.occurrences.increment();
+    }
+
+    void increment() {
+        occurrences.increment();
+    }
+
+    // 返回true表示这组分片表第一次出现
+    boolean addShardNames(List<String> shardNames) {
+        return shardNameSets.add(shardNames);
+    }
+
+    void addShardLineage(LineageResult shardLineage) {
+        lineages.add(shardLineage);
+    }
+
+    void complete(LineageResult lineage) {
+        this.lineage = lineage;
+        lineages.add(lineage);
+    }
+
+    void fail(String error) {
+        this.error = error;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getSampleSql() {
+        return sampleSql;
+    }
+
+    List<String> getSampleShardNames() {
+        return sampleShardNames;
+    }
+
+    public long getOccurrences() {
+        return occurrences.sum();
+    }
+
+    // 样本SQL分析完成前为null
+    public LineageResult getLineage() {
+        return lineage;
+    }
+
+    // 样本及每组不同分片表的血缘，按记录顺序排列，只会追加
+    public List<LineageResult> getLineages() {
+        return Collections.unmodifiableList(lineages);
+    }
+
+    // 所有分片组合用到的叶子节点表
+    public Set<String> getTables() {
+        Set<String> tables = new TreeSet<>();
+        for (LineageResult shardLineage : lineages) {
+            tables.addAll(shardLineage.getTables());
+        }
+        return tables;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,257 @@
+package com.dataagent.template;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 把SQL归一化成查询模板：字符串和数字字面量替换为 ?，IN列表和数组字面量折叠为一个 ?，
+ * 日期分片表后缀（如 events_20240101、table$20240101）替换为 *，关键字转为大写，去掉注释并统一空白。
+ * 双引号默认按ANSI标准当作标识符，和反引号一样保留；MySQL/BigQuery日志里双引号是字符串，需要显式打开。
+ * 单次扫描完成，不使用正则。
+ */
+public class QueryTemplateNormalizer {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+        "ALL", "AND", "AS", "ASC", "BETWEEN", "BY", "CASE", "CAST", "CREATE", "CROSS", "DELETE", "DESC",
+        "DISTINCT", "ELSE", "END", "EXCEPT", "EXISTS", "FALSE", "FROM", "FULL", "GROUP", "HAVING", "IF", "IN",
+        "INNER", "INSERT", "INTERSECT", "INTERVAL", "INTO", "IS", "JOIN", "LEFT", "LIKE", "LIMIT", "MATCHED",
+        "MERGE", "NOT", "NULL", "OFFSET", "ON", "OR", "ORDER", "OUTER", "OVER", "PARTITION", "QUALIFY",
+        "REPLACE", "RIGHT", "SELECT", "SET", "TABLE", "THEN", "TRUE", "UNION", "UNNEST", "UPDATE", "USING",
+        "VALUES", "VIEW", "WHEN", "WHERE", "WITH"));
+    private static final int MAX_KEYWORD_LENGTH = 9;
+
+    private final boolean doubleQuotedStrings;
+
+    public QueryTemplateNormalizer() {
+        this(false);
+    }
+
+    // doubleQuotedStrings为true时 "..." 按字符串字面量替换为 ?
+    public QueryTemplateNormalizer(boolean doubleQuotedStrings) {
+        this.doubleQuotedStrings = doubleQuotedStrings;
+    }
+
+    public long fingerprint(String sql) {
+        return fingerprint(sql, null);
+    }
+
+    // shardNames不为null时，按出现顺序收集被替换为 * 的分片表名（如 events_20240101）
+    public long fingerprint(String sql, List<String> shardNames) {
+        String template = normalize(sql, shardNames);
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < template.length(); i++) {
+            hash ^= template.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    public String normalize(String sql) {
+        return normalize(sql, null);
+    }
+
+    public String normalize(String sql, List<String> shardNames) {
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length);
+        // 记录输出中每个未闭合括号的位置，用于折叠IN列表
+        int[] openBrackets = new int[16];
+        int depth = 0;
+        boolean pendingSpace = false;
+        // 最近一个单词（标识符或被替换的字面量）在输出中的结束位置
+        int wordEnd = -1;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            if (c == '-' && next == '-') {
+                while (i < length && sql.charAt(i) != '\n') {
+                    i++;
+                }
+                pendingSpace = true;
+                continue;
+            }
+            if (c == '/' && next == '*') {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                pendingSpace = true;
+                continue;
+            }
+
+            // 只在两个单词之间保留一个空格，标点两侧的空白全部去掉
+            boolean word = isIdentifierChar(c) || c == '\'' || c == '"' || c == '`';
+            if (pendingSpace && word && out.length() > 0 && out.length() == wordEnd) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+
+            if (c == '\'' || (c == '"' && doubleQuotedStrings)) {
+                i = skipQuoted(sql, i, c);
+                out.append('?');
+                wordEnd = out.length();
+            } else if (c == '`' || c == '"') {
+                int end = sql.indexOf(c, i + 1);
+                end = end < 0 ? length : end;
+                appendIdentifier(out, sql, i + 1, end, shardNames);
+                i = end + 1;
+                wordEnd = out.length();
+            } else if (Character.isDigit(c) && !isNameSegment(sql, i)) {
+                i = skipNumber(sql, i);
+                out.append('?');
+                wordEnd = out.length();
+            } else if (isIdentifierChar(c)) {
+                int end = i;
+                while (end < length && isIdentifierChar(sql.charAt(end))) {
+                    end++;
+                }
+                String keyword = end - i <= MAX_KEYWORD_LENGTH ? sql.substring(i, end).toUpperCase(Locale.ROOT) : null;
+                if (keyword != null && KEYWORDS.contains(keyword)) {
+                    out.append(keyword);
+                } else {
+                    appendIdentifier(out, sql, i, end, shardNames);
+                }
+                i = end;
+                wordEnd = out.length();
+            } else if (c == '(' || c == '[') {
+                if (depth == openBrackets.length) {
+                    openBrackets = Arrays.copyOf(openBrackets, depth * 2);
+                }
+                openBrackets[depth++] = out.length();
+                out.append(c);
+                i++;
+            } else if (c == ')' || c == ']') {
+                if (depth > 0) {
+                    collapseLiteralList(out, openBrackets[--depth]);
+                }
+                out.append(c);
+                i++;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    // 以数字开头但属于表路径的一段，如 analytics-prod-123456.raw.orders 中的 123456：
+    // 紧跟在标识符后的 - 或 . 之后，并且本身含字母或后面还接着 .name
+    private boolean isNameSegment(String sql, int start) {
+        if (start < 2 || !isIdentifierChar(sql.charAt(start - 2))) {
+            return false;
+        }
+        char separator = sql.charAt(start - 1);
+        if (separator == '.') {
+            return true;
+        }
+        if (separator != '-') {
+            return false;
+        }
+        int end = start;
+        boolean letters = false;
+        while (end < sql.length() && isIdentifierChar(sql.charAt(end))) {
+            letters |= !Character.isDigit(sql.charAt(end));
+            end++;
+        }
+        return letters || (end + 1 < sql.length() && sql.charAt(end) == '.'
+            && (isIdentifierChar(sql.charAt(end + 1)) || sql.charAt(end + 1) == '`'));
+    }
+
+    // 数字字面量：数字和字母（指数、十六进制），小数点只在后面跟数字时算作字面量的一部分
+    private int skipNumber(String sql, int start) {
+        int i = start;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (Character.isLetterOrDigit(c)
+                || (c == '.' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1)))) {
+                i++;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    // 复制标识符，末尾是日期分片后缀时把日期替换为 *，并把该段完整的表名记入shardNames
+    private void appendIdentifier(StringBuilder out, String sql, int start, int end, List<String> shardNames) {
+        int digitsStart = end;
+        while (digitsStart > start && Character.isDigit(sql.charAt(digitsStart - 1))) {
+            digitsStart--;
+        }
+        int digits = end - digitsStart;
+        boolean dateSuffix = (digits == 6 || digits == 8 || digits == 10)
+            && digitsStart - 1 > start
+            && (sql.charAt(digitsStart - 1) == '_' || sql.charAt(digitsStart - 1) == '$')
+            && (sql.startsWith("19", digitsStart) || sql.startsWith("20", digitsStart));
+        if (dateSuffix) {
+            out.append(sql, start, digitsStart).append('*');
+            if (shardNames != null) {
+                // 反引号内可能是完整路径，只取最后一段
+                int segmentStart = sql.lastIndexOf('.', digitsStart - 1) + 1;
+                shardNames.add(sql.substring(Math.max(segmentStart, start), end));
+            }
+        } else {
+            out.append(sql, start, end);
+        }
+    }
+
+    // IN (?,?,?) 和 [?,?,?] 折叠为 IN (?) 和 [?]，让不同长度的列表落到同一个模板
+    private void collapseLiteralList(StringBuilder out, int open) {
+        if (out.length() == open + 1) {
+            return;
+        }
+        for (int i = open + 1; i < out.length(); i++) {
+            char c = out.charAt(i);
+            if (c != '?' && c != ',') {
+                return;
+            }
+        }
+        if (out.charAt(open) == '[' || isPrecededByIn(out, open)) {
+            out.setLength(open + 1);
+            out.append('?');
+        }
+    }
+
+    private boolean isPrecededByIn(StringBuilder out, int open) {
+        int end = open;
+        if (end > 0 && out.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end >= 2
+            && Character.toUpperCase(out.charAt(end - 2)) == 'I'
+            && Character.toUpperCase(out.charAt(end - 1)) == 'N'
+            && (end == 2 || !isIdentifierChar(out.charAt(end - 3)));
+    }
+
+    private boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,38 @@
+package com.dataagent.watch;
+
+import java.util.List;
+import java.util.Set;
+
+// 一批文件变化处理完以后的结果
+public class LineageUpdate {
+    private final List<String> changedFiles;
+    private final Set<String> changedTables;
+    private final Set<String> affectedDownstream;
+    private final long elapsedNanos;
+
+    public LineageUpdate(List<String> changedFiles, Set<String> changedTables,
+                         Set<String> affectedDownstream, long elapsedNanos) {
+        this.changedFiles = changedFiles;
+        this.changedTables = changedTables;
+        this.affectedDownstream = affectedDownstream;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<String> getChangedFiles() {
+        return changedFiles;
+    }
+
+    // 血缘边发生变化的表
+    public Set<String> getChangedTables() {
+        return changedTables;
+    }
+
+    // 直接或间接依赖变化表的下游表
+    public Set<String> getAffectedDownstream() {
+        return affectedDownstream;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+}
@@ -0,0 +1,307 @@
+package com.dataagent.watch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.dataagent.LineageResult;
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.lineage.LineageEdge;
+import com.dataagent.lineage.LineageGraph;
+
+/**
+ * 监听SQL目录，文件变化时只重新分析变化的文件，并在血缘图中替换这些文件产生的边。
+ * 短时间内的连续变化（例如git checkout）会合并成一批处理；变化一直不停时，最多等待maxBatchDelayMillis就先处理一批。
+ */
+public class SqlDirectoryWatcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SqlDirectoryWatcher.class);
+
+    private static final String SQL_EXTENSION = ".sql";
+
+    private final Path root;
+    private final SqlLineageAnalyzer analyzer;
+    private final LineageGraph graph;
+    private final long debounceMillis;
+    private final long maxBatchDelayMillis;
+    private final Consumer<LineageUpdate> listener;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+
+    public SqlDirectoryWatcher(Path root, SqlLineageAnalyzer analyzer, LineageGraph graph,
+                               long debounceMillis, Consumer<LineageUpdate> listener) throws IOException {
+        this(root, analyzer, graph, debounceMillis, debounceMillis * 10, listener);
+    }
+
+    public SqlDirectoryWatcher(Path root, SqlLineageAnalyzer analyzer, LineageGraph graph, long debounceMillis,
+                               long maxBatchDelayMillis, Consumer<LineageUpdate> listener) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.analyzer = analyzer;
+        this.graph = graph;
+        this.debounceMillis = debounceMillis;
+        this.maxBatchDelayMillis = maxBatchDelayMillis;
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    // 注册所有子目录并分析已有的SQL文件
+    public LineageUpdate start() throws IOException {
+        List<Path> sqlFiles = registerTree(root);
+        return applyChanges(sqlFiles);
+    }
+
+    // 阻塞处理文件变化，直到线程被中断或watcher被关闭
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchDelayMillis);
+                Set<Path> changed = new LinkedHashSet<>();
+                collectEvents(key, changed);
+
+                // 等待一段安静期，把这期间的变化合并成一批；从第一个事件起超过最长等待时间就不再等
+                while (true) {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) {
+                        break;
+                    }
+                    key = watchService.poll(Math.min(debounceMillis, remainingMillis), TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    collectEvents(key, changed);
+                }
+                if (!changed.isEmpty()) {
+                    applyChanges(changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            log.debug("Watch service closed, stopping watcher for {}", root);
+        }
+    }
+
+    public LineageUpdate applyChanges(Collection<Path> paths) {
+        long start = System.nanoTime();
+        List<String> changedFiles = new ArrayList<>();
+        Set<String> changedTables = new LinkedHashSet<>();
+
+        for (Path path : paths) {
+            if (Files.isDirectory(path)) {
+                continue;
+            }
+            String source = root.relativize(path.toAbsolutePath().normalize()).toString();
+            changedFiles.add(source);
+            if (Files.exists(path)) {
+                changedTables.addAll(graph.replaceSource(source, analyzeFile(path)));
+            } else {
+                changedTables.addAll(graph.removeSource(source));
+            }
+        }
+
+        Set<String> affectedDownstream = graph.downstreamOf(changedTables);
+        LineageUpdate update = new LineageUpdate(changedFiles, changedTables, affectedDownstream,
+            System.nanoTime() - start);
+        if (!changedFiles.isEmpty()) {
+            log.info("Re-analyzed {} file(s) in {} ms, changed tables: {}, affected downstream: {}",
+                changedFiles.size(), update.getElapsedNanos() / 1_000_000.0, changedTables, affectedDownstream);
+        }
+        listener.accept(update);
+        return update;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void collectEvents(WatchKey key, Set<Path> changed) {
+        Path directory = watchedDirectories.get(key);
+        List<WatchEvent<?>> events = key.pollEvents();
+        if (directory == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : events) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失时重新扫描整个目录
+                log.warn("Watch events overflowed, rescanning {}", root);
+                changed.addAll(rescan());
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                try {
+                    changed.addAll(registerTree(path));
+                } catch (IOException e) {
+                    log.warn("Failed to watch new directory {}", path, e);
+                }
+            } else if (isSqlFile(path)) {
+                changed.add(path);
+            } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE
+                    && !path.getFileName().toString().endsWith(SQL_EXTENSION)) {
+                // 目录被删除或移走时，它下面的文件不会再各自产生事件，需要移除这些文件的边
+                changed.addAll(sourcesUnder(path));
+            }
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    private List<Path> registerTree(Path directory) throws IOException {
+        List<Path> sqlFiles = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.collect(Collectors.toList())) {
+                if (Files.isDirectory(path)) {
+                    WatchKey key = path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(key, path);
+                } else if (isSqlFile(path)) {
+                    sqlFiles.add(path);
+                }
+            }
+        }
+        return sqlFiles;
+    }
+
+    private List<Path> sourcesUnder(Path directory) {
+        return graph.getSources().stream()
+            .map(root::resolve)
+            .filter(path -> path.startsWith(directory))
+            .collect(Collectors.toList());
+    }
+
+    // 当前存在的SQL文件加上图中已有但可能已被删除的文件
+    private Set<Path> rescan() {
+        Set<Path> paths = new LinkedHashSet<>();
+        graph.getSources().forEach(source -> paths.add(root.resolve(source)));
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(this::isSqlFile).forEach(paths::add);
+        } catch (IOException e) {
+            log.warn("Failed to rescan {}", root, e);
+        }
+        return paths;
+    }
+
+    private List<LineageEdge> analyzeFile(Path path) {
+        List<LineageEdge> edges = new ArrayList<>();
+        String content;
+        try {
+            content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // 文件可能在读取前被删除或替换，按没有边处理，后续事件会再次触发
+            log.debug("Failed to read {}", path, e);
+            return edges;
+        }
+
+        String defaultTarget = path.getFileName().toString();
+        defaultTarget = defaultTarget.substring(0, defaultTarget.length() - SQL_EXTENSION.length());
+        for (String statement : splitStatements(content)) {
+            try {
+                LineageResult lineage = analyzer.analyze(statement);
+                String target = lineage.getTargetTable() != null ? lineage.getTargetTable() : defaultTarget;
+                edges.addAll(LineageEdge.fromLineage(lineage, target));
+            } catch (Exception e) {
+                log.warn("Failed to analyze statement in {}: {}", path, e.getMessage());
+            }
+        }
+        return edges;
+    }
+
+    // 按分号拆分多条语句，忽略引号和注释中的分号
+    static List<String> splitStatements(String content) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        for (int i = 0; i < content.length(); i++) {
+            char c = content.charAt(i);
+            char next = i + 1 < content.length() ? content.charAt(i + 1) : 0;
+            if (quote != 0) {
+                current.append(c);
+                if (c == '\\' && next != 0) {
+                    current.append(next);
+                    i++;
+                } else if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '-' && next == '-') {
+                while (i < content.length() && content.charAt(i) != '\n') {
+                    i++;
+                }
+                current.append('\n');
+            } else if (c == '/' && next == '*') {
+                int end = content.indexOf("*/", i + 2);
+                i = end < 0 ? content.length() : end + 1;
+                current.append(' ');
+            } else if (c == ';') {
+                addStatement(statements, current);
+            } else {
+                if (c == '\'' || c == '"' || c == '`') {
+                    quote = c;
+                }
+                current.append(c);
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+
+    private boolean isSqlFile(Path path) {
+        return path.getFileName().toString().endsWith(SQL_EXTENSION) && !Files.isDirectory(path);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SqlDirectoryWatcher <sql-directory> [debounce-millis] [max-batch-delay-millis]");
+            System.exit(1);
+        }
+        long debounceMillis = args.length > 1 ? Long.parseLong(args[1]) : 200;
+        long maxBatchDelayMillis = args.length > 2 ? Long.parseLong(args[2]) : debounceMillis * 10;
+
+        LineageGraph graph = new LineageGraph();
+        SqlDirectoryWatcher watcher = new SqlDirectoryWatcher(Paths.get(args[0]), new SqlLineageAnalyzer(),
+            graph, debounceMillis, maxBatchDelayMillis, update -> {
+                if (!update.getChangedTables().isEmpty()) {
+                    System.out.printf("[%.2f ms] changed: %s, affected downstream: %s%n",
+                        update.getElapsedNanos() / 1_000_000.0, update.getChangedTables(),
+                        update.getAffectedDownstream());
+                }
+            });
+        watcher.start();
+        System.out.printf("Watching %s: %d files, %d lineage edges%n",
+            args[0], graph.getSourceCount(), graph.getEdgeCount());
+        watcher.run();
+    }
+}
@@ -2,6 +2,7 @@ package com.dataagent;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
@@ -346,4 +347,108 @@ class SqlLineageAnalyzerTest {
         assertTrue(result.contains("amount"));
         assertTrue(result.contains("created_at"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void testAnalyzeCteWithNestedParentheses() {
+        String sql = "WITH recent_orders AS (" +
+                    "  SELECT user_id, amount " +
+                    "  FROM test-project.test-dataset.orders " +
+                    "  WHERE created_at > (SELECT MAX(created_at) FROM test-project.test-dataset.order_items WHERE (quantity > 1))" +
+                    ") " +
+                    "SELECT u.name, ro.amount " +
+                    "FROM test-project.test-dataset.users u " +
+                    "JOIN recent_orders ro ON u.id = ro.user_id";
+        String result = sqlLineageAnalyzer.analyzeLineage(sql);
+
+        assertNotNull(result);
+        assertTrue(result.contains("test-project.test-dataset.users"));
+        assertTrue(result.contains("test-project.test-dataset.orders"));
+        assertTrue(result.contains("test-project.test-dataset.order_items"));
+        assertFalse(result.contains("recent_orders"));
+    }
+
+    @Test
+    void testAnalyzeWithManyCTEs() {
+        int cteCount = 150;
+        StringBuilder sql = new StringBuilder("WITH ");
+        for (int i = 0; i < cteCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("cte_").append(i).append(" AS (")
+                .append("SELECT t.id, t.value_").append(i)
+                .append(" FROM test-project.test-dataset.source_").append(i).append(" t");
+            if (i > 0) {
+                sql.append(" JOIN cte_").append(i - 1).append(" prev ON t.id = prev.id");
+            }
+            sql.append(")");
+        }
+        sql.append(" SELECT c.id FROM cte_").append(cteCount - 1).append(" c");
+
+        String result = sqlLineageAnalyzer.analyzeLineage(sql.toString());
+
+        assertNotNull(result);
+        for (int i = 0; i < cteCount; i++) {
+            assertTrue(result.contains("test-project.test-dataset.source_" + i + "\n"));
+            assertTrue(result.contains("value_" + i + "\n"));
+        }
+        assertFalse(result.contains("cte_"));
+        // 并行分析后按CTE声明顺序合并，结果保持稳定
+        assertEquals(result, sqlLineageAnalyzer.analyzeLineage(sql.toString()));
+        assertTrue(result.indexOf("source_1\n") < result.indexOf("source_2\n"));
+    }
+
+    @Test
+    void testAnalyzeTargetTable() {
+        LineageResult created = sqlLineageAnalyzer.analyze(
+            "CREATE OR REPLACE TABLE mart.user_orders AS " +
+            "SELECT u.id, o.amount FROM raw.users u JOIN raw.orders o ON u.id = o.user_id");
+        LineageResult inserted = sqlLineageAnalyzer.analyze(
+            "INSERT INTO mart.daily_revenue (day, total) SELECT day, SUM(amount) FROM raw.orders GROUP BY day");
+        LineageResult query = sqlLineageAnalyzer.analyze("SELECT id FROM raw.users");
+
+        assertEquals("mart.user_orders", created.getTargetTable());
+        assertTrue(created.getTables().contains("raw.users"));
+        assertTrue(created.getTables().contains("raw.orders"));
+        assertEquals("mart.daily_revenue", inserted.getTargetTable());
+        assertTrue(inserted.getTables().contains("raw.orders"));
+        assertNull(query.getTargetTable());
+    }
+
+    @Test
+    void testAnalyzeIgnoresWithInsideStringLiteral() {
+        LineageResult result = sqlLineageAnalyzer.analyze(
+            "SELECT u.id FROM raw.users u WHERE u.note = 'tell me WITH foo AS (bar)'");
+
+        assertEquals(0, result.getCteCount());
+        assertTrue(result.getTables().contains("raw.users"));
+    }
+
+    @Test
+    void testAnalyzeInsertWithCte() {
+        LineageResult result = sqlLineageAnalyzer.analyze(
+            "INSERT INTO mart.revenue (day, total) WITH daily AS (SELECT o.day, o.amount FROM raw.orders o) " +
+            "SELECT d.day, d.amount FROM daily d");
+
+        assertEquals("mart.revenue", result.getTargetTable());
+        assertEquals(1, result.getCteCount());
+        assertTrue(result.getTables().contains("raw.orders"));
+        assertFalse(result.getTables().contains("daily"));
+    }
+
+    @Test
+    void testAnalyzeMergeUsingSource() {
+        LineageResult merged = sqlLineageAnalyzer.analyze(
+            "MERGE INTO mart.m t USING raw.src s ON t.id = s.id " +
+            "WHEN MATCHED THEN UPDATE SET t.v = s.v WHEN NOT MATCHED THEN INSERT (id, v) VALUES (s.id, s.v)");
+        LineageResult subquery = sqlLineageAnalyzer.analyze(
+            "MERGE INTO mart.m t USING (SELECT o.id FROM raw.orders o) s ON t.id = s.id WHEN MATCHED THEN DELETE");
+        LineageResult joined = sqlLineageAnalyzer.analyze(
+            "SELECT a.id FROM raw.a a JOIN raw.b b USING (id)");
+
+        assertEquals("mart.m", merged.getTargetTable());
+        assertEquals(Set.of("raw.src"), merged.getTables());
+        assertEquals(Set.of("raw.orders"), subquery.getTables());
+        assertEquals(Set.of("raw.a", "raw.b"), joined.getTables());
+    }
+}
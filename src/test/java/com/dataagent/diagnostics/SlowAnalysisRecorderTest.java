@@ -0,0 +1,91 @@
+package com.dataagent.diagnostics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class SlowAnalysisRecorderTest {
+
+    @Test
+    void testKeepsOnlySlowestAnalyses() {
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(true, 3, 1000, 60_000);
+        long[] durationsMillis = {5, 40, 1, 25, 60, 10};
+        for (long millis : durationsMillis) {
+            recorder.record(millis * 1_000_000, Collections.emptyMap(), "SELECT " + millis, 1, 0);
+        }
+
+        List<SlowAnalysis> slowest = recorder.getSlowest();
+        assertEquals(3, slowest.size());
+        assertEquals(60.0, slowest.get(0).getTotalMillis(), 0.001);
+        assertEquals(40.0, slowest.get(1).getTotalMillis(), 0.001);
+        assertEquals(25.0, slowest.get(2).getTotalMillis(), 0.001);
+        assertFalse(recorder.isCandidate(20 * 1_000_000));
+    }
+
+    @Test
+    void testExpiredAnalysesMakeRoomForRecentOnes() {
+        AtomicLong now = new AtomicLong(1_000);
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(true, 2, 1000, 60_000, now::get);
+        recorder.record(500 * 1_000_000L, Collections.emptyMap(), "SELECT outlier", 1, 0);
+        recorder.record(400 * 1_000_000L, Collections.emptyMap(), "SELECT outlier2", 1, 0);
+        assertFalse(recorder.isCandidate(10 * 1_000_000L));
+
+        // 窗口过后，历史异常值不再挡住新的分析
+        now.addAndGet(60_000);
+        assertTrue(recorder.isCandidate(10 * 1_000_000L));
+        recorder.record(10 * 1_000_000L, Collections.emptyMap(), "SELECT recent", 1, 0);
+
+        List<SlowAnalysis> slowest = recorder.getSlowest();
+        assertEquals(1, slowest.size());
+        assertEquals("SELECT recent", slowest.get(0).getSql());
+    }
+
+    @Test
+    void testGetSlowestDropsExpiredAnalyses() {
+        AtomicLong now = new AtomicLong(1_000);
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(true, 5, 1000, 60_000, now::get);
+        recorder.record(5 * 1_000_000L, Collections.emptyMap(), "SELECT 1", 1, 0);
+
+        now.addAndGet(59_999);
+        assertEquals(1, recorder.getSlowest().size());
+        now.addAndGet(1);
+        assertTrue(recorder.getSlowest().isEmpty());
+    }
+
+    @Test
+    void testTruncatesSql() {
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(true, 1, 10, 60_000);
+        recorder.record(1_000_000, Collections.emptyMap(), "SELECT id, name FROM users", 1, 0);
+
+        SlowAnalysis analysis = recorder.getSlowest().get(0);
+        assertEquals("SELECT id,...", analysis.getSql());
+        assertEquals(26, analysis.getSqlLength());
+    }
+
+    @Test
+    void testDisabledRecorderKeepsNothing() {
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(false, 5, 1000, 60_000);
+        recorder.record(1_000_000, Collections.emptyMap(), "SELECT 1", 0, 0);
+
+        assertTrue(recorder.getSlowest().isEmpty());
+        assertFalse(recorder.isCandidate(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testTraceRecordsStageBreakdown() {
+        SlowAnalysisRecorder recorder = new SlowAnalysisRecorder(true, 5, 1000, 60_000);
+        AnalysisTrace trace = AnalysisTrace.start(recorder, "SELECT id FROM users");
+        trace.stage("preprocess");
+        trace.stage("main_query");
+        trace.finish(1, 0);
+
+        SlowAnalysis analysis = recorder.getSlowest().get(0);
+        assertEquals(2, analysis.getStageMillis().size());
+        assertTrue(analysis.getStageMillis().containsKey("preprocess"));
+        assertTrue(analysis.getStageMillis().containsKey("main_query"));
+        assertEquals(1, analysis.getTableCount());
+    }
+}
@@ -0,0 +1,230 @@
+package com.dataagent.lineage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.dataagent.service.DataHubClient;
+
+class LineageEmitterTest {
+
+    private static final LineageEdge ORDERS = new LineageEdge("raw.orders", "mart.orders");
+    private static final LineageEdge USERS = new LineageEdge("raw.users", "mart.orders");
+    private static final LineageEdge REVENUE = new LineageEdge("mart.orders", "mart.revenue");
+
+    @Test
+    void testDuplicateEdgesWithinWindowAreDropped() throws Exception {
+        RecordingClient client = new RecordingClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 50, 60_000, 5, 1);
+
+        assertTrue(emitter.emit(ORDERS));
+        assertFalse(emitter.emit(ORDERS));
+        assertEquals(2, emitter.emitAll(Arrays.asList(USERS, ORDERS, REVENUE, USERS)));
+        emitter.close();
+
+        assertEquals(Arrays.asList(ORDERS, USERS, REVENUE), client.allEdges());
+        LineageEmitterStats stats = emitter.getStats();
+        assertEquals(3, stats.getEmittedEdges());
+        assertEquals(3, stats.getDuplicateEdges());
+        assertEquals(3, stats.getFlushedEdges());
+        assertEquals(0, stats.getQueueDepth());
+    }
+
+    @Test
+    void testSettingsAreReadFromSystemProperties() {
+        System.setProperty("datahub.lineage-emitter.queue-capacity", "7");
+        try {
+            LineageEmitter emitter = LineageEmitter.fromSystemProperties(new RecordingClient());
+            emitter.close();
+            assertEquals(7, emitter.getStats().getQueueCapacity());
+        } finally {
+            System.clearProperty("datahub.lineage-emitter.queue-capacity");
+        }
+    }
+
+    @Test
+    void testEdgeIsWrittenAgainAfterWindowExpires() throws Exception {
+        RecordingClient client = new RecordingClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 10, 1, 5, 1);
+
+        assertTrue(emitter.emit(ORDERS));
+        TimeUnit.MILLISECONDS.sleep(5);
+        assertTrue(emitter.emit(ORDERS));
+        emitter.close();
+
+        assertEquals(Arrays.asList(ORDERS, ORDERS), client.allEdges());
+    }
+
+    @Test
+    void testFullBatchIsFlushedBeforeInterval() throws Exception {
+        RecordingClient client = new RecordingClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 2, 60_000, 60_000, 5, 1);
+        try {
+            emitter.emitAll(Arrays.asList(ORDERS, USERS, REVENUE));
+
+            assertEquals(Arrays.asList(ORDERS, USERS), client.batches.poll(5, TimeUnit.SECONDS));
+            assertNull(client.batches.poll(100, TimeUnit.MILLISECONDS));
+        } finally {
+            emitter.close();
+        }
+        assertEquals(Arrays.asList(REVENUE), client.batches.poll());
+    }
+
+    @Test
+    void testPartialBatchIsFlushedAfterInterval() throws Exception {
+        RecordingClient client = new RecordingClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 500, 50, 60_000, 5, 1);
+        try {
+            emitter.emit(ORDERS);
+
+            assertEquals(Arrays.asList(ORDERS), client.batches.poll(5, TimeUnit.SECONDS));
+        } finally {
+            emitter.close();
+        }
+        assertEquals(1, emitter.getStats().getFlushCount());
+    }
+
+    @Test
+    void testEmitBlocksWhenQueueIsFull() throws Exception {
+        RecordingClient client = new RecordingClient();
+        client.blocked = new CountDownLatch(1);
+        LineageEmitter emitter = new LineageEmitter(client, 1, 1, 10, 60_000, 5, 1);
+
+        emitter.emit(ORDERS);
+        client.flushStarted.await(5, TimeUnit.SECONDS);
+        emitter.emit(USERS);
+        Thread producer = new Thread(() -> {
+            try {
+                emitter.emit(REVENUE);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+
+        // 写入阻塞时队列已满，生产者被挂起
+        assertTrue(producer.isAlive());
+        assertEquals(1, emitter.getStats().getQueueDepth());
+
+        client.blocked.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        emitter.close();
+        assertEquals(Arrays.asList(ORDERS, USERS, REVENUE), client.allEdges());
+    }
+
+    @Test
+    void testFailedBatchIsRetried() throws Exception {
+        RecordingClient client = new RecordingClient();
+        client.failures = 2;
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 10, 60_000, 5, 1);
+
+        emitter.emitAll(Arrays.asList(ORDERS, USERS));
+        emitter.close();
+
+        assertEquals(Arrays.asList(ORDERS, USERS), client.allEdges());
+        LineageEmitterStats stats = emitter.getStats();
+        assertEquals(2, stats.getRetryCount());
+        assertEquals(0, stats.getDroppedEdges());
+        assertEquals(2, stats.getFlushedEdges());
+    }
+
+    @Test
+    void testDroppedEdgesCanBeEmittedAgain() throws Exception {
+        RecordingClient client = new RecordingClient();
+        client.failures = 2;
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 10, 60_000, 1, 1);
+
+        emitter.emit(ORDERS);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emitter.getStats().getDroppedEdges() == 0 && System.currentTimeMillis() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        assertEquals(1, emitter.getStats().getDroppedEdges());
+
+        assertTrue(emitter.emit(ORDERS));
+        emitter.close();
+        assertEquals(Arrays.asList(ORDERS), client.allEdges());
+    }
+
+    @Test
+    void testEveryAcceptedEdgeIsFlushedWhenClosedConcurrently() throws Exception {
+        RecordingClient client = new RecordingClient();
+        LineageEmitter emitter = new LineageEmitter(client, 16, 8, 5, 60_000, 5, 1);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < 4; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; ; i++) {
+                        if (emitter.emit(new LineageEdge("raw.t" + producer + "_" + i, "mart.t"))) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                } catch (IllegalStateException e) {
+                    // emitter已关闭
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            thread.start();
+            producers.add(thread);
+        }
+        TimeUnit.MILLISECONDS.sleep(50);
+        emitter.close();
+        for (Thread thread : producers) {
+            thread.join(5000);
+        }
+
+        assertEquals(accepted.get(), client.allEdges().size());
+        assertEquals(accepted.get(), emitter.getStats().getFlushedEdges());
+        assertThrows(IllegalStateException.class, () -> emitter.emit(ORDERS));
+    }
+
+    private static class RecordingClient implements DataHubClient {
+        private final BlockingQueue<List<LineageEdge>> batches = new LinkedBlockingQueue<>();
+        private final CountDownLatch flushStarted = new CountDownLatch(1);
+        private volatile CountDownLatch blocked;
+        private volatile int failures;
+
+        @Override
+        public Optional<Map<String, String>> getTableSchema(String projectId, String datasetId, String tableId) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void createLineage(List<LineageEdge> edges) {
+            flushStarted.countDown();
+            if (blocked != null) {
+                try {
+                    blocked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("injected failure");
+            }
+            batches.add(new ArrayList<>(edges));
+        }
+
+        private List<LineageEdge> allEdges() {
+            List<LineageEdge> edges = new ArrayList<>();
+            batches.forEach(edges::addAll);
+            return edges;
+        }
+    }
+}
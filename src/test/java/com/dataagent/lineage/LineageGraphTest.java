@@ -0,0 +1,56 @@
+package com.dataagent.lineage;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class LineageGraphTest {
+
+    @Test
+    void testReplaceSourcePatchesEdges() {
+        LineageGraph graph = new LineageGraph();
+        graph.replaceSource("orders.sql", Arrays.asList(
+            new LineageEdge("raw.orders", "mart.orders"),
+            new LineageEdge("raw.users", "mart.orders")));
+        graph.replaceSource("revenue.sql", Collections.singletonList(
+            new LineageEdge("mart.orders", "mart.revenue")));
+
+        Set<String> changed = graph.replaceSource("orders.sql", Arrays.asList(
+            new LineageEdge("raw.orders", "mart.orders"),
+            new LineageEdge("raw.customers", "mart.orders")));
+
+        assertEquals(Collections.singleton("mart.orders"), changed);
+        assertEquals(Set.of("raw.orders", "raw.customers"), graph.getUpstream("mart.orders"));
+        assertTrue(graph.getDownstream("raw.users").isEmpty());
+        assertEquals(Collections.singleton("mart.revenue"), graph.downstreamOf(changed));
+    }
+
+    @Test
+    void testSharedEdgesAreReferenceCounted() {
+        LineageGraph graph = new LineageGraph();
+        LineageEdge edge = new LineageEdge("raw.orders", "mart.orders");
+        graph.replaceSource("a.sql", Collections.singletonList(edge));
+        graph.replaceSource("b.sql", Collections.singletonList(edge));
+
+        assertTrue(graph.removeSource("a.sql").isEmpty());
+        assertEquals(1, graph.getEdgeCount());
+
+        assertEquals(Collections.singleton("mart.orders"), graph.removeSource("b.sql"));
+        assertEquals(0, graph.getEdgeCount());
+        assertEquals(0, graph.getSourceCount());
+    }
+
+    @Test
+    void testDownstreamOfFollowsTransitiveDependents() {
+        LineageGraph graph = new LineageGraph();
+        graph.replaceSource("b.sql", Collections.singletonList(new LineageEdge("a", "b")));
+        graph.replaceSource("c.sql", Collections.singletonList(new LineageEdge("b", "c")));
+        graph.replaceSource("d.sql", Arrays.asList(new LineageEdge("c", "d"), new LineageEdge("a", "d")));
+
+        assertEquals(Set.of("b", "c", "d"), graph.downstreamOf(Collections.singleton("a")));
+        assertEquals(Set.of("d"), graph.downstreamOf(Collections.singleton("c")));
+    }
+}
@@ -0,0 +1,224 @@
+package com.dataagent.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.support.DataHubStandInServer;
+
+/**
+ * 对 /analyze 做固定并发压测，输出吞吐和 p50/p99/p999 延迟。
+ * 默认不运行，使用 mvn test -Dtest=AnalyzeLoadTest -Dloadtest=true 启动。
+ * 加上 -Dloadtest.datahub=standin 时schema查询走HttpDataHubClient和本地DataHub替身服务。
+ * cteAnalysisLatency 按CTE数量统计单条SQL的分析耗时，分别在默认设置和
+ * -Danalyzer.cte.parallel-threshold=1000000（始终顺序分析）下运行，对比后确定并行阈值。
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class AnalyzeLoadTest {
+    private static final Logger log = LoggerFactory.getLogger(AnalyzeLoadTest.class);
+
+    private static final String CORPUS_RESOURCE = "/loadtest/analyze-corpus.sql";
+
+    private static DataHubStandInServer dataHubStandIn;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void dataHubProperties(DynamicPropertyRegistry registry) throws IOException {
+        if (!"standin".equals(System.getProperty("loadtest.datahub"))) {
+            registry.add("datahub.environment", () -> "local");
+            return;
+        }
+        dataHubStandIn = new DataHubStandInServer(
+            Long.getLong("loadtest.datahub.latency", 5),
+            Long.getLong("loadtest.datahub.jitter", 5),
+            Double.parseDouble(System.getProperty("loadtest.datahub.error-rate", "0.0")));
+        dataHubStandIn.addDefaultTestData();
+        dataHubStandIn.start();
+        registry.add("datahub.environment", () -> "PROD");
+        registry.add("datahub.server.url", dataHubStandIn::getBaseUrl);
+    }
+
+    @AfterAll
+    static void stopDataHubStandIn() {
+        if (dataHubStandIn != null) {
+            dataHubStandIn.stop();
+        }
+    }
+
+    @Test
+    void analyzeEndpointUnderLoad() throws Exception {
+        List<String> corpus = loadCorpus();
+        assertFalse(corpus.isEmpty(), "SQL corpus is empty");
+
+        int requestsPerLevel = Integer.getInteger("loadtest.requests", 2000);
+        int warmupRequests = Integer.getInteger("loadtest.warmup", 200);
+        String levels = System.getProperty("loadtest.concurrency", "1,4,16,64");
+
+        HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+        URI endpoint = URI.create("http://127.0.0.1:" + port + "/analyze");
+
+        // 预热JIT和连接池，不计入结果
+        runLevel(client, endpoint, corpus, 4, warmupRequests);
+
+        StringBuilder report = new StringBuilder("\n/analyze load test\n");
+        report.append(String.format("%-12s %-10s %-8s %-12s %-10s %-10s %-10s%n",
+            "concurrency", "requests", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)"));
+        long totalErrors = 0;
+        for (String level : levels.split(",")) {
+            int concurrency = Integer.parseInt(level.trim());
+            LevelResult result = runLevel(client, endpoint, corpus, concurrency, requestsPerLevel);
+            totalErrors += result.errors;
+            report.append(String.format("%-12d %-10d %-8d %-12.1f %-10.2f %-10.2f %-10.2f%n",
+                concurrency, result.latencies.count(), result.errors, result.throughput(),
+                result.latencies.percentileMillis(50), result.latencies.percentileMillis(99),
+                result.latencies.percentileMillis(99.9)));
+        }
+        if (dataHubStandIn != null) {
+            report.append(String.format("DataHub stand-in: %d schema requests, %d injected errors%n",
+                dataHubStandIn.getRequestCount(), dataHubStandIn.getErrorCount()));
+        }
+        log.info(report.toString());
+
+        assertEquals(0, totalErrors, "non-2xx responses during load test");
+    }
+
+    @Test
+    void cteAnalysisLatency() {
+        SqlLineageAnalyzer analyzer = new SqlLineageAnalyzer();
+        int iterations = Integer.getInteger("loadtest.cte.iterations", 2000);
+        String counts = System.getProperty("loadtest.cte.counts", "1,2,4,8,16,32,64");
+
+        StringBuilder report = new StringBuilder(String.format(
+            "%nCTE analysis latency (parallel-threshold=%s, cores=%d)%n",
+            System.getProperty("analyzer.cte.parallel-threshold", "default"),
+            Runtime.getRuntime().availableProcessors()));
+        report.append(String.format("%-8s %-10s %-10s %-12s%n", "ctes", "p50(us)", "p99(us)", "per-cte(us)"));
+        for (String count : counts.split(",")) {
+            int cteCount = Integer.parseInt(count.trim());
+            String sql = cteQuery(cteCount);
+            for (int i = 0; i < iterations; i++) {
+                analyzer.analyze(sql);
+            }
+            LatencyStats latencies = new LatencyStats();
+            for (int i = 0; i < iterations; i++) {
+                long begin = System.nanoTime();
+                analyzer.analyze(sql);
+                latencies.record(System.nanoTime() - begin);
+            }
+            double p50Micros = latencies.percentileMillis(50) * 1000;
+            report.append(String.format("%-8d %-10.1f %-10.1f %-12.1f%n", cteCount, p50Micros,
+                latencies.percentileMillis(99) * 1000, p50Micros / cteCount));
+        }
+        log.info(report.toString());
+    }
+
+    // 每个CTE各自读一张源表并关联一张维表，互不依赖
+    private static String cteQuery(int cteCount) {
+        StringBuilder sql = new StringBuilder("WITH ");
+        for (int i = 0; i < cteCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(String.format("c%d AS (SELECT s.id, s.amount, s.name FROM raw.source_%d s " +
+                "JOIN raw.dim_%d d ON s.id = d.id WHERE s.amount > 10)", i, i, i));
+        }
+        return sql.append(" SELECT c0.id FROM c0").toString();
+    }
+
+    private LevelResult runLevel(HttpClient client, URI endpoint, List<String> corpus,
+                                 int concurrency, int requests) throws InterruptedException {
+        LevelResult result = new LevelResult();
+        AtomicInteger next = new AtomicInteger();
+        AtomicLong errors = new AtomicLong();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            pool.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests) {
+                    String sql = corpus.get(index % corpus.size());
+                    HttpRequest request = HttpRequest.newBuilder(endpoint)
+                        .timeout(Duration.ofSeconds(30))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                            "sql=" + URLEncoder.encode(sql, StandardCharsets.UTF_8)))
+                        .build();
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (response.statusCode() / 100 != 2) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    result.latencies.record(System.nanoTime() - begin);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.MINUTES);
+        result.elapsedNanos = System.nanoTime() - start;
+        result.errors = errors.get();
+        return result;
+    }
+
+    private List<String> loadCorpus() throws IOException {
+        List<String> statements = new ArrayList<>();
+        try (InputStream in = AnalyzeLoadTest.class.getResourceAsStream(CORPUS_RESOURCE)) {
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            for (String statement : content.split(";")) {
+                if (!statement.trim().isEmpty()) {
+                    statements.add(statement.trim());
+                }
+            }
+        }
+        return statements;
+    }
+
+    private static class LevelResult {
+        private final LatencyStats latencies = new LatencyStats();
+        private long elapsedNanos;
+        private long errors;
+
+        private double throughput() {
+            return latencies.count() / (elapsedNanos / 1_000_000_000.0);
+        }
+    }
+}
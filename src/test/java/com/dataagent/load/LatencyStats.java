@@ -0,0 +1,33 @@
+package com.dataagent.load;
+
+import java.util.Arrays;
+
+/**
+ * 记录单次请求耗时（纳秒），在压测结束后计算分位数。
+ */
+public class LatencyStats {
+    private long[] samples = new long[1024];
+    private int size;
+
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    public synchronized double percentileMillis(double percentile) {
+        if (size == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        index = Math.max(0, Math.min(size - 1, index));
+        return sorted[index] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,124 @@
+package com.dataagent.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dataagent.lineage.LineageEdge;
+import com.dataagent.support.DataHubStandInServer;
+
+class HttpDataHubClientTest {
+
+    private DataHubStandInServer server;
+    private HttpDataHubClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = new DataHubStandInServer();
+        server.addDefaultTestData();
+        server.start();
+        client = new HttpDataHubClient(server.getBaseUrl(), "test-token", "PROD",
+            Duration.ofSeconds(1), Duration.ofSeconds(2));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void testGetTableSchema() {
+        Optional<Map<String, String>> schema = client.getTableSchema("test-project", "test-dataset", "users");
+
+        assertTrue(schema.isPresent());
+        assertEquals("STRING", schema.get().get("id"));
+        assertEquals("TIMESTAMP", schema.get().get("created_at"));
+    }
+
+    @Test
+    void testUnknownTableReturnsEmpty() {
+        Optional<Map<String, String>> schema = client.getTableSchema("test-project", "test-dataset", "missing");
+
+        assertFalse(schema.isPresent());
+    }
+
+    @Test
+    void testConcurrentRequestsForSameTableAreCoalesced() throws Exception {
+        server.setLatencyMillis(500);
+        int callers = 16;
+        CountDownLatch ready = new CountDownLatch(callers);
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<Optional<Map<String, String>>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                Callable<Optional<Map<String, String>>> call = () -> {
+                    ready.countDown();
+                    ready.await();
+                    return client.getTableSchema("test-project", "test-dataset", "orders");
+                };
+                results.add(pool.submit(call));
+            }
+            for (Future<Optional<Map<String, String>>> result : results) {
+                assertEquals("FLOAT", result.get().get().get("amount"));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    void testCreateLineageSendsOneRequestPerBatch() {
+        client.createLineage(Arrays.asList(
+            new LineageEdge("test-project.test-dataset.orders", "test-project.test-dataset.revenue"),
+            new LineageEdge("test-project.test-dataset.users", "test-project.test-dataset.revenue")));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(2, server.getLineageEdgeCount());
+        assertEquals(Set.of("test-project.test-dataset.orders", "test-project.test-dataset.users"),
+            server.getUpstreamTables("test-project.test-dataset.revenue"));
+    }
+
+    @Test
+    void testServerErrorIsPropagated() {
+        server.setErrorRate(1.0);
+
+        assertThrows(IllegalStateException.class,
+            () -> client.getTableSchema("test-project", "test-dataset", "users"));
+        assertEquals(0, client.getInFlightCount());
+    }
+
+    @Test
+    void testRequestTimeout() {
+        server.setLatencyMillis(300);
+        HttpDataHubClient impatientClient = new HttpDataHubClient(server.getBaseUrl(), "", "PROD",
+            Duration.ofSeconds(1), Duration.ofMillis(50));
+
+        assertThrows(RuntimeException.class,
+            () -> impatientClient.getTableSchema("test-project", "test-dataset", "users"));
+    }
+
+    @Test
+    void testDataHubServiceFallsBackToEmptySchemaOnError() {
+        server.setErrorRate(1.0);
+        DataHubService service = new DataHubService(client);
+
+        assertTrue(service.getTableSchema("test-project", "test-dataset", "users").isEmpty());
+    }
+}
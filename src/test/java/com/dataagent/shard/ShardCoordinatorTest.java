@@ -0,0 +1,172 @@
+package com.dataagent.shard;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.dataagent.SqlLineageAnalyzer;
+
+class ShardCoordinatorTest {
+
+    private static final String TOKEN = "test-token";
+
+    private static final List<String> CORPUS = Arrays.asList(
+        "INSERT INTO mart.orders SELECT o.id, o.amount FROM raw.orders o WHERE o.id = 1",
+        "INSERT INTO mart.orders SELECT o.id, o.amount FROM raw.orders o WHERE o.id = 2",
+        "INSERT INTO mart.revenue SELECT SUM(amount) FROM mart.orders",
+        "CREATE TABLE mart.users AS SELECT u.id, u.name FROM raw.users u",
+        "SELECT u.email FROM raw.users u WHERE u.id = 42",
+        "INSERT INTO mart.sessions SELECT s.id FROM raw.sessions s JOIN raw.users u ON s.user_id = u.id",
+        "");
+
+    @Test
+    void testShardedAnalysisMergesWorkerResults() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(CORPUS.iterator(), TOKEN, 2, 3, 10_000)) {
+            int port = coordinator.start(InetAddress.getLoopbackAddress(), 0);
+            List<Thread> workers = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                workers.add(startWorker("worker-" + i, port));
+            }
+
+            assertTrue(coordinator.awaitCompletion(10, TimeUnit.SECONDS));
+            for (Thread worker : workers) {
+                worker.join(5000);
+            }
+
+            assertEquals(6, coordinator.getStatementCount());
+            assertEquals(3, coordinator.getCompletedShards());
+            assertEquals(0, coordinator.getFailedShards());
+            assertEquals(Set.of("raw.orders"), coordinator.getGraph().getUpstream("mart.orders"));
+            assertEquals(Set.of("mart.orders"), coordinator.getGraph().getUpstream("mart.revenue"));
+            assertEquals(Set.of("raw.sessions", "raw.users"), coordinator.getGraph().getUpstream("mart.sessions"));
+            assertEquals(Set.of("id", "name", "email"), coordinator.getColumnIndex().get("raw.users"));
+        }
+    }
+
+    @Test
+    void testShardFromLostWorkerIsRetried() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(CORPUS.iterator(), TOKEN, 10, 3, 10_000)) {
+            int port = coordinator.start(InetAddress.getLoopbackAddress(), 0);
+
+            // 领取分片后直接断开连接，模拟worker进程崩溃
+            try (ShardConnection connection = new ShardConnection(new Socket("127.0.0.1", port))) {
+                connection.send(ShardMessage.ready("crashing-worker", TOKEN));
+                assertEquals(ShardMessage.SHARD, connection.receive().getType());
+            }
+            Thread worker = startWorker("worker-0", port);
+
+            assertTrue(coordinator.awaitCompletion(10, TimeUnit.SECONDS));
+            worker.join(5000);
+
+            assertEquals(1, coordinator.getRetryCount());
+            assertEquals(1, coordinator.getCompletedShards());
+            assertEquals(6, coordinator.getStatementCount());
+            assertEquals(Set.of("raw.users"), coordinator.getGraph().getUpstream("mart.users"));
+        }
+    }
+
+    @Test
+    void testShardIsDroppedAfterMaxAttempts() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(CORPUS.iterator(), TOKEN, 10, 1, 10_000)) {
+            int port = coordinator.start(InetAddress.getLoopbackAddress(), 0);
+
+            try (ShardConnection connection = new ShardConnection(new Socket("127.0.0.1", port))) {
+                connection.send(ShardMessage.ready("crashing-worker", TOKEN));
+                connection.receive();
+            }
+
+            assertTrue(coordinator.awaitCompletion(10, TimeUnit.SECONDS));
+            assertEquals(1, coordinator.getFailedShards());
+            assertEquals(0, coordinator.getCompletedShards());
+        }
+    }
+
+    @Test
+    void testWorkerWithWrongTokenIsRejected() throws Exception {
+        try (ShardCoordinator coordinator = new ShardCoordinator(CORPUS.iterator(), TOKEN, 10, 3, 10_000)) {
+            int port = coordinator.start(InetAddress.getLoopbackAddress(), 0);
+
+            try (ShardConnection connection = new ShardConnection(new Socket("127.0.0.1", port))) {
+                connection.send(ShardMessage.ready("intruder", "wrong-token"));
+                assertThrows(IOException.class, connection::receive);
+            }
+            Thread worker = startWorker("worker-0", port);
+
+            assertTrue(coordinator.awaitCompletion(10, TimeUnit.SECONDS));
+            worker.join(5000);
+            assertEquals(0, coordinator.getRetryCount());
+            assertEquals(6, coordinator.getStatementCount());
+        }
+    }
+
+    @Test
+    void testOversizedMessageIsRejected() throws Exception {
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+             Socket client = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+             ShardConnection sender = new ShardConnection(client);
+             ShardConnection receiver = new ShardConnection(server.accept(), 4096)) {
+            sender.send(ShardMessage.ready("worker-0", TOKEN));
+            assertEquals("worker-0", receiver.receive().getWorkerId());
+
+            sender.send(ShardMessage.shard(0, Collections.nCopies(100, "SELECT id FROM raw.orders WHERE id = 1")));
+            IOException e = assertThrows(IOException.class, receiver::receive);
+            assertTrue(e.getMessage().contains("exceeds 4096 bytes"));
+        }
+    }
+
+    @Test
+    void testRestartBackoffIsCapped() {
+        assertEquals(1000, ShardCoordinator.restartBackoffMillis(0));
+        assertEquals(4000, ShardCoordinator.restartBackoffMillis(2));
+        assertEquals(30_000, ShardCoordinator.restartBackoffMillis(10));
+    }
+
+    @Test
+    void testWorkerReportsEachTemplateOnce() {
+        ShardWorker worker = new ShardWorker("worker-0", TOKEN, new SqlLineageAnalyzer(), 2);
+
+        ShardMessage first = worker.process(ShardMessage.shard(0, CORPUS.subList(0, 2)));
+        ShardMessage second = worker.process(ShardMessage.shard(1, CORPUS.subList(0, 1)));
+
+        assertEquals(Integer.valueOf(2), first.getStatementCount());
+        assertEquals(1, first.getEdges().size());
+        assertEquals(Integer.valueOf(1), second.getStatementCount());
+        assertTrue(second.getEdges().isEmpty());
+    }
+
+    @Test
+    void testWorkerReportsNewShardsOfKnownTemplate() {
+        ShardWorker worker = new ShardWorker("worker-0", TOKEN, new SqlLineageAnalyzer(), 1);
+
+        worker.process(ShardMessage.shard(0, Arrays.asList(
+            "INSERT INTO mart.daily SELECT e.id FROM raw.events_20240101 e")));
+        ShardMessage second = worker.process(ShardMessage.shard(1, Arrays.asList(
+            "INSERT INTO mart.daily SELECT e.id FROM raw.events_20240101 e",
+            "INSERT INTO mart.daily SELECT e.id FROM raw.events_20240102 e")));
+
+        assertEquals(1, second.getEdges().size());
+        assertEquals("raw.events_20240102", second.getEdges().get(0).getUpstreamTable());
+    }
+
+    private Thread startWorker(String workerId, int port) {
+        Thread thread = new Thread(() -> {
+            try {
+                new ShardWorker(workerId, TOKEN, new SqlLineageAnalyzer(), 2).run("127.0.0.1", port);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+}
@@ -0,0 +1,92 @@
+package com.dataagent.shard;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 用真实的本地worker进程跑同一份语料，比较不同worker数下的吞吐和加速比。
+ * 每个worker的并行度为CPU核数除以worker数，与ShardCoordinator.main的默认值一致。
+ * 默认不运行，使用 mvn test -Dtest=ShardScalingTest -Dloadtest=true 启动。
+ */
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+class ShardScalingTest {
+    private static final Logger log = LoggerFactory.getLogger(ShardScalingTest.class);
+
+    private static final String TOKEN = "scaling-test-token";
+
+    @Test
+    void throughputByWorkerCount() throws Exception {
+        int statementCount = Integer.getInteger("loadtest.shard.statements", 50_000);
+        int shardSize = Integer.getInteger("loadtest.shard.size", 500);
+        String levels = System.getProperty("loadtest.shard.workers", "1,2,4");
+        int cores = Runtime.getRuntime().availableProcessors();
+        List<String> corpus = generateCorpus(statementCount);
+
+        StringBuilder report = new StringBuilder("\nSharded analysis scaling (" + cores + " cores)\n");
+        report.append(String.format("%-8s %-12s %-10s %-14s %-8s%n",
+            "workers", "parallelism", "ms", "statements/s", "speedup"));
+        double baseline = 0;
+        int expectedEdges = -1;
+        for (String level : levels.split(",")) {
+            int workers = Integer.parseInt(level.trim());
+            int parallelism = Math.max(1, cores / workers);
+            long start = System.nanoTime();
+            int edges = runOnce(corpus, workers, parallelism, shardSize);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            double throughput = statementCount / seconds;
+            if (baseline == 0) {
+                baseline = throughput;
+            }
+            if (expectedEdges < 0) {
+                expectedEdges = edges;
+            }
+            // worker数不影响合并后的结果
+            assertEquals(expectedEdges, edges);
+            report.append(String.format("%-8d %-12d %-10.0f %-14.0f %-8.2f%n",
+                workers, parallelism, seconds * 1000, throughput, throughput / baseline));
+        }
+        log.info(report.toString());
+    }
+
+    private int runOnce(List<String> corpus, int workerCount, int parallelism, int shardSize) throws Exception {
+        List<Process> workers = new ArrayList<>();
+        try (ShardCoordinator coordinator = new ShardCoordinator(corpus.iterator(), TOKEN, shardSize, 3, 300_000)) {
+            int port = coordinator.start(InetAddress.getLoopbackAddress(), 0);
+            for (int i = 0; i < workerCount; i++) {
+                workers.add(ShardCoordinator.launchLocalWorker(port, System.getProperty("java.class.path"),
+                    parallelism, TOKEN));
+            }
+            assertTrue(coordinator.awaitCompletion(30, TimeUnit.MINUTES));
+            assertEquals(corpus.size(), coordinator.getStatementCount());
+            assertEquals(0, coordinator.getFailedShards());
+            return coordinator.getGraph().getEdgeCount();
+        } finally {
+            for (Process worker : workers) {
+                if (!worker.waitFor(10, TimeUnit.SECONDS)) {
+                    worker.destroy();
+                }
+            }
+        }
+    }
+
+    // 大部分语句属于不同的模板，避免模板去重让每个分片都几乎不用分析
+    private List<String> generateCorpus(int count) {
+        List<String> corpus = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            corpus.add(String.format(
+                "INSERT INTO mart.summary_%d SELECT a.id, a.col_%d, b.value_%d FROM raw.source_%d a " +
+                "JOIN raw.dim_%d b ON a.id = b.id WHERE a.created_at > '2024-01-01' AND b.flag = %d",
+                i % 200, i, i % 97, i % 500, i % 50, i));
+        }
+        return corpus;
+    }
+}
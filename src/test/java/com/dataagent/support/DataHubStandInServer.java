@@ -0,0 +1,280 @@
+package com.dataagent.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 本地DataHub替身服务，只实现GraphQL的dataset schema查询和updateLineage写入，
+ * 可以配置固定延迟、随机抖动和错误率，用于离线压测和客户端测试。
+ */
+public class DataHubStandInServer {
+    private static final Logger log = LoggerFactory.getLogger(DataHubStandInServer.class);
+
+    public static final String GRAPHQL_PATH = "/api/graphql";
+
+    private static final Pattern DATASET_URN_PATTERN =
+        Pattern.compile("urn:li:dataset:\\(urn:li:dataPlatform:[^,]+,([^,]+),[^)]+\\)");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Map<String, String>> schemas = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> lineage = new ConcurrentHashMap<>();
+    private final AtomicLong lineageEdgeCount = new AtomicLong();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile double errorRate;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public DataHubStandInServer() {
+        this(0, 0, 0.0);
+    }
+
+    public DataHubStandInServer(long latencyMillis, long jitterMillis, double errorRate) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.errorRate = errorRate;
+    }
+
+    public void start() throws IOException {
+        start(0);
+    }
+
+    public void start(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        // 每个请求一个线程，保证注入的延迟不会让请求排队
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext(GRAPHQL_PATH, this::handleGraphQl);
+        server.start();
+        log.info("DataHub stand-in listening on {} (latency={}ms, jitter={}ms, errorRate={})",
+            getBaseUrl(), latencyMillis, jitterMillis, errorRate);
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void addTableSchema(String projectId, String datasetId, String tableId, Map<String, String> schema) {
+        String key = String.format("%s.%s.%s", projectId, datasetId, tableId);
+        schemas.put(key, new LinkedHashMap<>(schema));
+    }
+
+    public void addDefaultTestData() {
+        Map<String, String> userTableSchema = new LinkedHashMap<>();
+        userTableSchema.put("id", "STRING");
+        userTableSchema.put("name", "STRING");
+        userTableSchema.put("email", "STRING");
+        userTableSchema.put("created_at", "TIMESTAMP");
+        addTableSchema("test-project", "test-dataset", "users", userTableSchema);
+
+        Map<String, String> orderTableSchema = new LinkedHashMap<>();
+        orderTableSchema.put("order_id", "STRING");
+        orderTableSchema.put("user_id", "STRING");
+        orderTableSchema.put("amount", "FLOAT");
+        orderTableSchema.put("status", "STRING");
+        orderTableSchema.put("created_at", "TIMESTAMP");
+        addTableSchema("test-project", "test-dataset", "orders", orderTableSchema);
+
+        Map<String, String> productTableSchema = new LinkedHashMap<>();
+        productTableSchema.put("product_id", "STRING");
+        productTableSchema.put("name", "STRING");
+        productTableSchema.put("price", "DECIMAL");
+        productTableSchema.put("category", "STRING");
+        addTableSchema("test-project", "test-dataset", "products", productTableSchema);
+
+        Map<String, String> orderItemTableSchema = new LinkedHashMap<>();
+        orderItemTableSchema.put("order_item_id", "STRING");
+        orderItemTableSchema.put("order_id", "STRING");
+        orderItemTableSchema.put("product_id", "STRING");
+        orderItemTableSchema.put("quantity", "INTEGER");
+        orderItemTableSchema.put("unit_price", "DECIMAL");
+        addTableSchema("test-project", "test-dataset", "order_items", orderItemTableSchema);
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setJitterMillis(long jitterMillis) {
+        this.jitterMillis = jitterMillis;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getErrorCount() {
+        return errorCount.get();
+    }
+
+    public long getLineageEdgeCount() {
+        return lineageEdgeCount.get();
+    }
+
+    public Set<String> getUpstreamTables(String tableName) {
+        return lineage.getOrDefault(tableName, Collections.emptySet());
+    }
+
+    public void resetCounters() {
+        requestCount.set(0);
+        errorCount.set(0);
+        lineageEdgeCount.set(0);
+    }
+
+    private void handleGraphQl(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                respond(exchange, 405, "{\"errors\":[{\"message\":\"method not allowed\"}]}");
+                return;
+            }
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+
+            simulateLatency();
+
+            if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errorCount.incrementAndGet();
+                respond(exchange, 500, "{\"errors\":[{\"message\":\"injected failure\"}]}");
+                return;
+            }
+
+            JsonNode request = objectMapper.readTree(body);
+            if (request.path("query").asText().contains("updateLineage")) {
+                recordLineage(request.path("variables").path("input").path("edgesToAdd"));
+                respond(exchange, 200, "{\"data\":{\"updateLineage\":true}}");
+                return;
+            }
+
+            String tableName = extractTableName(request, body);
+            Map<String, String> schema = tableName == null ? null : schemas.get(tableName);
+            respond(exchange, 200, objectMapper.writeValueAsString(toResponse(tableName, schema)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "{\"errors\":[{\"message\":\"interrupted\"}]}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void simulateLatency() throws InterruptedException {
+        long delay = latencyMillis;
+        if (jitterMillis > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitterMillis + 1);
+        }
+        if (delay > 0) {
+            TimeUnit.MILLISECONDS.sleep(delay);
+        }
+    }
+
+    private void recordLineage(JsonNode edgesToAdd) {
+        for (JsonNode edge : edgesToAdd) {
+            String upstream = extractTableName(edge.path("upstreamUrn").asText());
+            String downstream = extractTableName(edge.path("downstreamUrn").asText());
+            if (upstream != null && downstream != null) {
+                lineage.computeIfAbsent(downstream, k -> ConcurrentHashMap.newKeySet()).add(upstream);
+                lineageEdgeCount.incrementAndGet();
+            }
+        }
+    }
+
+    private String extractTableName(String urn) {
+        Matcher matcher = DATASET_URN_PATTERN.matcher(urn);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private String extractTableName(JsonNode request, String body) {
+        JsonNode urn = request.path("variables").path("urn");
+        Matcher matcher = DATASET_URN_PATTERN.matcher(urn.isTextual() ? urn.asText() : body);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private Map<String, Object> toResponse(String tableName, Map<String, String> schema) {
+        Map<String, Object> dataset = null;
+        if (schema != null) {
+            List<Map<String, String>> fields = new ArrayList<>();
+            schema.forEach((field, type) -> {
+                Map<String, String> fieldNode = new HashMap<>();
+                fieldNode.put("fieldPath", field);
+                fieldNode.put("nativeDataType", type);
+                fields.add(fieldNode);
+            });
+            Map<String, Object> schemaMetadata = new HashMap<>();
+            schemaMetadata.put("fields", fields);
+            dataset = new HashMap<>();
+            dataset.put("name", tableName);
+            dataset.put("schemaMetadata", schemaMetadata);
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("dataset", dataset);
+        Map<String, Object> response = new HashMap<>();
+        response.put("data", data);
+        return response;
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // 独立运行: <port> <latencyMillis> <jitterMillis> <errorRate>
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 9002;
+        long latency = args.length > 1 ? Long.parseLong(args[1]) : 5;
+        long jitter = args.length > 2 ? Long.parseLong(args[2]) : 5;
+        double errorRate = args.length > 3 ? Double.parseDouble(args[3]) : 0.0;
+
+        DataHubStandInServer server = new DataHubStandInServer(latency, jitter, errorRate);
+        server.addDefaultTestData();
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+    }
+}
@@ -0,0 +1,126 @@
+package com.dataagent.template;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import com.dataagent.LineageResult;
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.lineage.LineageEmitter;
+import com.dataagent.service.InMemoryDataHubClient;
+
+class QueryLogProcessorTest {
+
+    @Test
+    void testAnalyzesEachTemplateOnce() {
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        QueryLogProcessor processor = new QueryLogProcessor(analyzer);
+
+        for (int day = 1; day <= 28; day++) {
+            processor.process(String.format(
+                "SELECT u.id, o.amount FROM project.analytics.events_202402%02d u " +
+                "JOIN project.analytics.orders o ON u.id = o.user_id WHERE o.status IN ('paid', 'shipped') AND o.amount > %d",
+                day, day * 10));
+        }
+        processor.process("SELECT id, name FROM project.analytics.users WHERE id = 1");
+        processor.process("SELECT id, name FROM project.analytics.users WHERE id = 2");
+
+        assertEquals(30, processor.getStatementCount());
+        assertEquals(2, processor.getTemplateCount());
+        assertEquals(2, analyzer.calls.get());
+
+        List<QueryTemplate> templates = processor.getTemplates();
+        assertEquals(28, templates.get(0).getOccurrences());
+        assertEquals(2, templates.get(1).getOccurrences());
+        assertTrue(templates.get(0).getLineage().getTables().contains("project.analytics.events_20240201"));
+        assertTrue(templates.get(0).getLineage().getTables().contains("project.analytics.orders"));
+        assertEquals(29, templates.get(0).getTables().size());
+        assertTrue(templates.get(0).getTables().contains("project.analytics.events_20240228"));
+    }
+
+    @Test
+    void testKeepsTablesInNumericProjectsApart() {
+        QueryLogProcessor processor = new QueryLogProcessor(new SqlLineageAnalyzer());
+
+        QueryTemplate revenue = processor.process(
+            "INSERT INTO analytics-prod-123456.mart.revenue SELECT id FROM analytics-prod-123456.raw.orders");
+        QueryTemplate users = processor.process(
+            "INSERT INTO analytics-prod-123456.mart.users SELECT id FROM analytics-prod-123456.raw.customers");
+
+        assertEquals(2, processor.getTemplateCount());
+        assertEquals("analytics-prod-123456.mart.revenue", revenue.getLineage().getTargetTable());
+        assertEquals("analytics-prod-123456.mart.users", users.getLineage().getTargetTable());
+        assertTrue(users.getLineage().getTables().contains("analytics-prod-123456.raw.customers"));
+    }
+
+    @Test
+    void testReplayWritesLineageThroughEmitter() {
+        InMemoryDataHubClient client = new InMemoryDataHubClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 10, 60_000, 5, 1);
+        QueryLogProcessor processor = new QueryLogProcessor(new SqlLineageAnalyzer(), new QueryTemplateNormalizer(),
+            emitter);
+
+        for (int day = 1; day <= 5; day++) {
+            processor.process("INSERT INTO mart.revenue SELECT o.amount FROM raw.orders o WHERE o.day = " + day);
+        }
+        processor.process("INSERT INTO mart.revenue SELECT r.amount FROM raw.orders r JOIN raw.refunds f ON r.id = f.id");
+        processor.process("SELECT id FROM raw.users");
+        emitter.close();
+
+        assertEquals(Set.of("raw.orders", "raw.refunds"), client.getUpstreamTables("mart.revenue"));
+        // 第二个模板里的 raw.orders -> mart.revenue 在去重窗口内被跳过
+        assertEquals(2, emitter.getStats().getFlushedEdges());
+        assertEquals(1, emitter.getStats().getDuplicateEdges());
+    }
+
+    @Test
+    void testReplayWritesLineageForEveryShard() {
+        InMemoryDataHubClient client = new InMemoryDataHubClient();
+        LineageEmitter emitter = new LineageEmitter(client, 100, 10, 10, 60_000, 5, 1);
+        CountingAnalyzer analyzer = new CountingAnalyzer();
+        QueryLogProcessor processor = new QueryLogProcessor(analyzer, new QueryTemplateNormalizer(), emitter);
+
+        for (int day = 1; day <= 3; day++) {
+            processor.process(String.format(
+                "INSERT INTO mart.daily_2024010%d SELECT e.id FROM raw.events_2024010%d e WHERE e.id > %d",
+                day, day, day));
+        }
+        processor.process("INSERT INTO mart.daily_20240103 SELECT e.id FROM raw.events_20240103 e WHERE e.id > 9");
+        emitter.close();
+
+        assertEquals(1, processor.getTemplateCount());
+        assertEquals(1, analyzer.calls.get());
+        assertEquals(Set.of("raw.events_20240102"), client.getUpstreamTables("mart.daily_20240102"));
+        assertEquals(Set.of("raw.events_20240103"), client.getUpstreamTables("mart.daily_20240103"));
+        assertEquals(3, emitter.getStats().getFlushedEdges());
+        assertEquals(0, emitter.getStats().getDuplicateEdges());
+    }
+
+    @Test
+    void testRecordsAnalysisFailure() {
+        QueryLogProcessor processor = new QueryLogProcessor(new SqlLineageAnalyzer() {
+            @Override
+            public LineageResult analyze(String sql) {
+                throw new IllegalStateException("boom");
+            }
+        });
+
+        QueryTemplate template = processor.process("SELECT 1");
+
+        assertNull(template.getLineage());
+        assertEquals("boom", template.getError());
+    }
+
+    private static class CountingAnalyzer extends SqlLineageAnalyzer {
+        private final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public LineageResult analyze(String sql) {
+            calls.incrementAndGet();
+            return super.analyze(sql);
+        }
+    }
+}
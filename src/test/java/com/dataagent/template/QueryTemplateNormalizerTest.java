@@ -0,0 +1,107 @@
+package com.dataagent.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+class QueryTemplateNormalizerTest {
+
+    private final QueryTemplateNormalizer normalizer = new QueryTemplateNormalizer();
+
+    @Test
+    void testMasksLiterals() {
+        String template = normalizer.normalize(
+            "SELECT id FROM project.dataset.users WHERE name = 'alice' AND age > 18 AND score < 1.5");
+
+        assertEquals("SELECT id FROM project.dataset.users WHERE name=? AND age>? AND score<?", template);
+    }
+
+    @Test
+    void testCollapsesInLists() {
+        assertEquals(
+            normalizer.normalize("SELECT id FROM t WHERE status IN ('a', 'b', 'c') AND id NOT IN (1,2)"),
+            normalizer.normalize("SELECT id FROM t WHERE status IN ('x') AND id NOT IN (7, 8, 9, 10)"));
+        assertEquals("SELECT id FROM t WHERE id IN(?)",
+            normalizer.normalize("SELECT id FROM t WHERE id IN (1, 2, 3)"));
+        assertEquals("SELECT id FROM t WHERE id IN UNNEST([?])",
+            normalizer.normalize("SELECT id FROM t WHERE id IN UNNEST([1, 2, 3])"));
+    }
+
+    @Test
+    void testMasksDateShardedTableSuffixes() {
+        assertEquals("SELECT user_id FROM analytics.events_*",
+            normalizer.normalize("SELECT user_id FROM analytics.events_20240101"));
+        assertEquals("SELECT user_id FROM analytics.sessions$*",
+            normalizer.normalize("SELECT user_id FROM `analytics.sessions$20240101`"));
+        assertEquals("SELECT id FROM t_v2", normalizer.normalize("SELECT id FROM t_v2"));
+        assertEquals("SELECT e.id FROM analytics.events_* AS e",
+            normalizer.normalize("SELECT e.id FROM analytics.events_20240101 AS e"));
+    }
+
+    @Test
+    void testKeepsNumericSegmentsOfTablePaths() {
+        assertEquals("SELECT id FROM analytics-prod-123456.raw.orders WHERE id=? AND amount>x-?",
+            normalizer.normalize("SELECT id FROM analytics-prod-123456.raw.orders WHERE id = 7 AND amount > x-1"));
+        assertNotEquals(
+            normalizer.fingerprint("INSERT INTO analytics-prod-123456.mart.revenue " +
+                "SELECT id FROM analytics-prod-123456.raw.orders"),
+            normalizer.fingerprint("INSERT INTO analytics-prod-123456.mart.users " +
+                "SELECT id FROM analytics-prod-123456.raw.customers"));
+        assertEquals("SELECT id FROM t WHERE score<? LIMIT ?",
+            normalizer.normalize("SELECT id FROM t WHERE score < 1.5 LIMIT 10"));
+    }
+
+    @Test
+    void testKeepsDoubleQuotedIdentifiers() {
+        assertEquals("SELECT col FROM schema.orders WHERE name=?",
+            normalizer.normalize("SELECT \"col\" FROM \"schema\".\"orders\" WHERE name = 'bob'"));
+        assertNotEquals(
+            normalizer.fingerprint("SELECT \"col\" FROM \"schema\".\"orders\""),
+            normalizer.fingerprint("SELECT \"col\" FROM \"schema\".\"users\""));
+
+        QueryTemplateNormalizer mysql = new QueryTemplateNormalizer(true);
+        assertEquals("SELECT id FROM users WHERE name=?",
+            mysql.normalize("SELECT id FROM users WHERE name = \"bob\""));
+    }
+
+    @Test
+    void testUpperCasesKeywords() {
+        assertEquals("SELECT a FROM T WHERE b=? AND c IN(?)",
+            normalizer.normalize("select a from T where b=1 and c in (1, 2)"));
+        assertEquals(
+            normalizer.fingerprint("SELECT a FROM T WHERE b=1"),
+            normalizer.fingerprint("select a from T Where b=1"));
+        assertNotEquals(
+            normalizer.fingerprint("SELECT a FROM T"),
+            normalizer.fingerprint("SELECT a FROM t"));
+    }
+
+    @Test
+    void testCollectsShardNames() {
+        List<String> shardNames = new ArrayList<>();
+        normalizer.fingerprint("SELECT id FROM analytics.events_20240101 e " +
+            "JOIN `analytics.sessions$20240102` s ON e.id = s.id", shardNames);
+
+        assertEquals(Arrays.asList("events_20240101", "sessions$20240102"), shardNames);
+    }
+
+    @Test
+    void testIgnoresCommentsAndWhitespace() {
+        assertEquals(
+            normalizer.fingerprint("SELECT id, name\n  FROM users -- daily\nWHERE id = 1"),
+            normalizer.fingerprint("/* job 42 */ SELECT id,name FROM users WHERE id=2"));
+    }
+
+    @Test
+    void testDifferentTemplatesHaveDifferentFingerprints() {
+        assertNotEquals(
+            normalizer.fingerprint("SELECT id FROM users WHERE id = 1"),
+            normalizer.fingerprint("SELECT name FROM users WHERE id = 1"));
+        assertNotEquals(
+            normalizer.fingerprint("SELECT id FROM users u JOIN orders o ON u.id = o.user_id"),
+            normalizer.fingerprint("SELECT id FROM users u JOIN products o ON u.id = o.user_id"));
+    }
+}
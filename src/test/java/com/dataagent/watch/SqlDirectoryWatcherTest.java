@@ -0,0 +1,172 @@
+package com.dataagent.watch;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dataagent.SqlLineageAnalyzer;
+import com.dataagent.lineage.LineageGraph;
+
+class SqlDirectoryWatcherTest {
+
+    private Path directory;
+    private LineageGraph graph;
+    private BlockingQueue<LineageUpdate> updates;
+    private SqlDirectoryWatcher watcher;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("sql-watch");
+        write("orders.sql", "CREATE OR REPLACE TABLE mart.orders AS " +
+            "SELECT o.id, u.name FROM raw.orders o JOIN raw.users u ON o.user_id = u.id");
+        write("revenue.sql", "INSERT INTO mart.revenue SELECT SUM(amount) FROM mart.orders");
+        write("reports/daily.sql", "SELECT r.total FROM mart.revenue r");
+
+        graph = new LineageGraph();
+        updates = new LinkedBlockingQueue<>();
+        watcher = new SqlDirectoryWatcher(directory, new SqlLineageAnalyzer(), graph, 50, updates::add);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        watcher.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    void testInitialScanBuildsGraph() throws IOException {
+        watcher.start();
+
+        assertEquals(Set.of("raw.orders", "raw.users"), graph.getUpstream("mart.orders"));
+        assertEquals(Set.of("mart.orders"), graph.getUpstream("mart.revenue"));
+        // 没有目标表的文件使用文件名作为下游节点
+        assertEquals(Set.of("mart.revenue"), graph.getUpstream("daily"));
+    }
+
+    @Test
+    void testChangedFileOnlyPatchesItsEdges() throws IOException {
+        watcher.start();
+        write("orders.sql", "CREATE OR REPLACE TABLE mart.orders AS SELECT o.id FROM raw.orders o");
+
+        LineageUpdate update = watcher.applyChanges(Collections.singletonList(directory.resolve("orders.sql")));
+
+        assertEquals(Collections.singletonList("orders.sql"), update.getChangedFiles());
+        assertEquals(Set.of("mart.orders"), update.getChangedTables());
+        assertEquals(Set.of("mart.revenue", "daily"), update.getAffectedDownstream());
+        assertEquals(Set.of("raw.orders"), graph.getUpstream("mart.orders"));
+        assertEquals(Set.of("mart.orders"), graph.getUpstream("mart.revenue"));
+    }
+
+    @Test
+    void testDeletedFileRemovesItsEdges() throws IOException {
+        watcher.start();
+        Files.delete(directory.resolve("revenue.sql"));
+
+        LineageUpdate update = watcher.applyChanges(Collections.singletonList(directory.resolve("revenue.sql")));
+
+        assertEquals(Set.of("mart.revenue"), update.getChangedTables());
+        assertTrue(graph.getUpstream("mart.revenue").isEmpty());
+        assertTrue(graph.getDownstream("mart.orders").isEmpty());
+    }
+
+    @Test
+    void testWatchServiceDebouncesChanges() throws Exception {
+        watcher.start();
+        updates.clear();
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+        try {
+            write("orders.sql", "CREATE TABLE mart.orders AS SELECT o.id FROM raw.orders o");
+            write("orders.sql", "CREATE TABLE mart.orders AS SELECT o.id FROM raw.orders_v2 o");
+
+            LineageUpdate update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update);
+            assertEquals(Collections.singletonList("orders.sql"), update.getChangedFiles());
+            assertEquals(Set.of("raw.orders_v2"), graph.getUpstream("mart.orders"));
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void testContinuousWritesAreFlushedAfterMaxDelay() throws Exception {
+        watcher.close();
+        watcher = new SqlDirectoryWatcher(directory, new SqlLineageAnalyzer(), graph, 300, 600, updates::add);
+        watcher.start();
+        updates.clear();
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+        try {
+            // 每次写入间隔都短于安静期，只靠安静期的话不会处理
+            long start = System.nanoTime();
+            LineageUpdate update = null;
+            for (int i = 0; i < 100 && update == null; i++) {
+                write("orders.sql", "CREATE TABLE mart.orders AS SELECT o.id FROM raw.orders_" + i + " o");
+                update = updates.poll(50, TimeUnit.MILLISECONDS);
+            }
+            assertNotNull(update);
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 3000);
+            assertEquals(Collections.singletonList("orders.sql"), update.getChangedFiles());
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void testRenamedDirectoryDropsStaleSources() throws Exception {
+        watcher.start();
+        updates.clear();
+        Thread thread = new Thread(watcher::run);
+        thread.start();
+        try {
+            Files.move(directory.resolve("reports"), directory.resolve("archive"));
+
+            // 删除和新建事件可能分成两批到达
+            Set<String> expected = Set.of("orders.sql", "revenue.sql", Paths.get("archive", "daily.sql").toString());
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (!graph.getSources().equals(expected) && System.currentTimeMillis() < deadline) {
+                updates.poll(100, TimeUnit.MILLISECONDS);
+            }
+            assertEquals(expected, graph.getSources());
+            assertEquals(Set.of("mart.revenue"), graph.getUpstream("daily"));
+        } finally {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    void testSplitStatements() {
+        List<String> statements = SqlDirectoryWatcher.splitStatements(
+            "-- setup; ignored\nINSERT INTO a SELECT ';' FROM b;\n/* ; */ INSERT INTO c SELECT x FROM d;");
+
+        assertEquals(2, statements.size());
+        assertEquals("INSERT INTO a SELECT ';' FROM b", statements.get(0));
+        assertEquals("INSERT INTO c SELECT x FROM d", statements.get(1));
+    }
+
+    private void write(String name, String sql) throws IOException {
+        Path path = directory.resolve(name);
+        Files.createDirectories(path.getParent());
+        Files.write(path, sql.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,62 @@
+SELECT id, name FROM test-project.test-dataset.users;
+
+SELECT u.id, u.name, o.order_id
+FROM test-project.test-dataset.users u
+JOIN test-project.test-dataset.orders o ON u.id = o.user_id
+WHERE o.status = 'active';
+
+SELECT u.name, o.order_id
+FROM test-project.test-dataset.users u
+JOIN test-project.test-dataset.orders o ON u.id = o.user_id
+WHERE o.amount > (SELECT AVG(amount) FROM test-project.test-dataset.orders);
+
+SELECT id, name FROM test-project.test-dataset.users
+UNION ALL
+SELECT id, name FROM test-project.test-dataset.archived_users;
+
+WITH user_orders AS (
+  SELECT user_id, COUNT(*) as order_count
+  FROM test-project.test-dataset.orders
+  WHERE created_at >= '2024-01-01'
+  GROUP BY user_id
+)
+SELECT u.name, uo.order_count
+FROM test-project.test-dataset.users u
+JOIN user_orders uo ON u.id = uo.user_id;
+
+WITH user_stats AS (
+  SELECT user_id, COUNT(*) as order_count, SUM(amount) as total_amount
+  FROM test-project.test-dataset.orders
+  GROUP BY user_id
+),
+product_stats AS (
+  SELECT product_id, COUNT(*) as sales_count
+  FROM test-project.test-dataset.order_items
+  GROUP BY product_id
+)
+SELECT u.name, us.order_count, us.total_amount, p.name as product_name, ps.sales_count
+FROM test-project.test-dataset.users u
+JOIN user_stats us ON u.id = us.user_id
+JOIN test-project.test-dataset.order_items oi ON u.id = oi.order_id
+JOIN test-project.test-dataset.products p ON oi.product_id = p.product_id
+JOIN product_stats ps ON p.product_id = ps.product_id;
+
+SELECT
+  u.name,
+  COUNT(DISTINCT o.order_id) as total_orders,
+  SUM(oi.quantity) as total_items,
+  AVG(oi.unit_price) as avg_price
+FROM test-project.test-dataset.users u
+JOIN test-project.test-dataset.orders o ON u.id = o.user_id
+JOIN test-project.test-dataset.order_items oi ON o.order_id = oi.order_id
+WHERE o.status IN ('shipped', 'delivered', 'returned')
+GROUP BY u.name;
+
+SELECT
+  u.name,
+  o.order_id,
+  o.amount,
+  ROW_NUMBER() OVER (PARTITION BY u.id ORDER BY o.created_at DESC) as rn
+FROM `test-project`.`test-dataset`.`users` u
+JOIN `test-project`.`test-dataset`.`orders` o ON u.id = o.user_id
+WHERE o.created_at > TIMESTAMP_SUB(CURRENT_TIMESTAMP(), INTERVAL 30 DAY);